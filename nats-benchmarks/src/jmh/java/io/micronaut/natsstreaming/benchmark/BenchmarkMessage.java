@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.benchmark;
+
+import io.nats.streaming.Message;
+
+/**
+ * A message that is not bound to a server subscription, acking it does nothing.
+ *
+ * @author alisson
+ */
+public class BenchmarkMessage extends Message {
+
+    private final String subject;
+
+    private final byte[] data;
+
+    private final long sequence;
+
+    /**
+     * @param subject  The subject
+     * @param data     The body
+     * @param sequence The sequence
+     */
+    public BenchmarkMessage(String subject, byte[] data, long sequence) {
+        this.subject = subject;
+        this.data = data;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public boolean isRedelivered() {
+        return false;
+    }
+
+    @Override
+    public void ack() {
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.benchmark;
+
+import io.micronaut.messaging.annotation.Body;
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener;
+import io.micronaut.natsstreaming.annotation.Subject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener counting the orders delivered by the embedded connection.
+ *
+ * @author alisson
+ */
+@NatsStreamingListener(enableAck = true)
+public class CountingListener {
+
+    public static final String SUBJECT = "orders.counted";
+
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * @param order The order
+     */
+    @Subject(SUBJECT)
+    public void onOrder(@Body Order order) {
+        received.incrementAndGet();
+    }
+
+    /**
+     * @return the number of orders received
+     */
+    public long getReceived() {
+        return received.get();
+    }
+}
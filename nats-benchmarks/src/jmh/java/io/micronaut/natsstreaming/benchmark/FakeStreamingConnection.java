@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.benchmark;
+
+import io.micronaut.context.annotation.Replaces;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.natsstreaming.connection.NatsConnection;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.nats.client.Connection;
+import io.nats.streaming.AckHandler;
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.Subscription;
+import io.nats.streaming.SubscriptionOptions;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connection that records the handlers registered by the listeners so the benchmarks can call them directly.
+ * Disabled when the benchmark runs against the embedded connection.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(missingProperty = EmbeddedStreamingConnectionConfig.ENABLED)
+@Replaces(bean = StreamingConnection.class, factory = NatsConnection.class)
+public class FakeStreamingConnection implements StreamingConnection {
+
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * @param subject The subject
+     * @return the handler subscribed to the subject
+     */
+    public MessageHandler handler(String subject) {
+        return handlers.get(subject);
+    }
+
+    @Override
+    public void publish(String subject, byte[] data) {
+    }
+
+    @Override
+    public String publish(String subject, byte[] data, AckHandler ah) {
+        if (ah != null) {
+            ah.onAck(subject, null);
+        }
+        return subject;
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb) {
+        return subscribe(subject, null, cb, null);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb, SubscriptionOptions opts) {
+        return subscribe(subject, null, cb, opts);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, String queue, MessageHandler cb) {
+        return subscribe(subject, queue, cb, null);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, String queue, MessageHandler cb, SubscriptionOptions opts) {
+        handlers.put(subject, cb);
+        return null;
+    }
+
+    @Override
+    public Connection getNatsConnection() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        handlers.clear();
+    }
+}
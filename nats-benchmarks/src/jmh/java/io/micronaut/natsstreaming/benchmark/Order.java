@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.benchmark;
+
+import io.micronaut.core.annotation.Introspected;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Payload used by the benchmarks.
+ *
+ * @author alisson
+ */
+@Introspected
+public class Order {
+
+    private String id;
+
+    private String customer;
+
+    private BigDecimal amount;
+
+    private int quantity;
+
+    private List<String> items;
+
+    /**
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the customer
+     */
+    public String getCustomer() {
+        return customer;
+    }
+
+    /**
+     * @param customer
+     */
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+
+    /**
+     * @return the amount
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @param amount
+     */
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @param quantity
+     */
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * @return the items
+     */
+    public List<String> getItems() {
+        return items;
+    }
+
+    /**
+     * @param items
+     */
+    public void setItems(List<String> items) {
+        this.items = items;
+    }
+
+    /**
+     * @return a sample order
+     */
+    public static Order sample() {
+        Order order = new Order();
+        order.setId("3b2f7c1e-0d7a-4a55-9d0c-6f1f8f7f6a11");
+        order.setCustomer("customer-42");
+        order.setAmount(new BigDecimal("1234.56"));
+        order.setQuantity(3);
+        order.setItems(List.of("sku-1", "sku-2", "sku-3"));
+        return order;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.CountingListener;
+import io.micronaut.natsstreaming.benchmark.ExecutorCountingListener;
+import io.micronaut.natsstreaming.benchmark.Order;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.nats.streaming.StreamingConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares the acks sent by the listener threads with the acks queued to the {@link NatsAckCoalescer}, on the
+ * embedded connection. The {@code inline} listener runs and acks on the single dispatcher thread, the
+ * {@code executor} listener runs on several io threads with a max in flight of 64, so that the time to ack throttles
+ * the deliveries. {@code throughput} reports the average time per message of a burst, {@code latency} the round
+ * trip of a single message on an idle listener: the coalescer is only worth enabling when it lowers the first
+ * without raising the second.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class AckCoalescingBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"false", "true"})
+    private boolean coalesce;
+
+    @Param({"inline", "executor"})
+    private String listener;
+
+    private ApplicationContext context;
+
+    private StreamingConnection connection;
+
+    private String subject;
+
+    private LongSupplier received;
+
+    private byte[] body;
+
+    /**
+     * Starts the context with the embedded connection, coalescing the acks or not.
+     */
+    @Setup
+    public void setup() {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(EmbeddedStreamingConnectionConfig.ENABLED, "true");
+        properties.put(NatsAckConfig.ENABLED, String.valueOf(coalesce));
+        context = ApplicationContext.run(properties);
+        connection = context.getBean(StreamingConnection.class);
+        if ("executor".equals(listener)) {
+            final ExecutorCountingListener bean = context.getBean(ExecutorCountingListener.class);
+            subject = ExecutorCountingListener.SUBJECT;
+            received = bean::getReceived;
+        } else {
+            final CountingListener bean = context.getBean(CountingListener.class);
+            subject = CountingListener.SUBJECT;
+            received = bean::getReceived;
+        }
+        body = context.getBean(NatsMessageSerDesRegistry.class)
+                .findSerdes(Argument.of(Order.class)).get().serialize(Order.sample());
+    }
+
+    /**
+     * Stops the context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Publishes a batch and waits for its delivery, the max in flight keeping the acks on the path.
+     *
+     * @throws Exception if the publish fails
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void throughput() throws Exception {
+        final long target = received.getAsLong() + BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            connection.publish(subject, body);
+        }
+        awaitReceived(target);
+    }
+
+    /**
+     * Publishes a single message and waits for its delivery, on an idle listener.
+     *
+     * @throws Exception if the publish fails
+     */
+    @Benchmark
+    public void latency() throws Exception {
+        final long target = received.getAsLong() + 1;
+        connection.publish(subject, body);
+        awaitReceived(target);
+    }
+
+    /**
+     * @param target The number of received messages to wait for
+     */
+    private void awaitReceived(long target) {
+        while (received.getAsLong() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
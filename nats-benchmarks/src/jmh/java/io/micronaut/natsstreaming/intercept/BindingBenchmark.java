@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.core.bind.DefaultExecutableBinder;
+import io.micronaut.core.type.Argument;
+import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.natsstreaming.benchmark.BenchmarkMessage;
+import io.micronaut.natsstreaming.benchmark.Order;
+import io.micronaut.natsstreaming.benchmark.OrderListener;
+import io.micronaut.natsstreaming.bind.NatsBinderRegistry;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.nats.streaming.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares binding a message through {@link DefaultExecutableBinder} and {@link NatsBinderRegistry}, which
+ * resolves the binder and the serdes for every message, with the prepared {@link NatsListenerInvocationPlan}.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class BindingBenchmark {
+
+    private final DefaultExecutableBinder<Message> executableBinder = new DefaultExecutableBinder<>();
+
+    private ApplicationContext context;
+
+    private NatsBinderRegistry binderRegistry;
+
+    private ExecutableMethod<OrderListener, Object> method;
+
+    private NatsListenerInvocationPlan plan;
+
+    private OrderListener listener;
+
+    private BenchmarkMessage message;
+
+    /**
+     * Starts the context and serializes the sample order.
+     */
+    @Setup
+    public void setup() {
+        context = ApplicationContext.run();
+        binderRegistry = context.getBean(NatsBinderRegistry.class);
+        listener = context.getBean(OrderListener.class);
+        method = context.getBeanDefinition(OrderListener.class).getRequiredMethod("onOrder", Order.class);
+        plan = new NatsListenerInvocationPlan(method, binderRegistry, false);
+        byte[] body = context.getBean(NatsMessageSerDesRegistry.class)
+                .findSerdes(Argument.of(Order.class)).get().serialize(Order.sample());
+        message = new BenchmarkMessage(OrderListener.SUBJECT, body, 1L);
+    }
+
+    /**
+     * Stops the context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * @return the method result
+     */
+    @Benchmark
+    public Object executableBinder() {
+        return executableBinder.bind(method, binderRegistry, message).invoke(listener);
+    }
+
+    /**
+     * @return the method result
+     */
+    @Benchmark
+    public Object invocationPlan() {
+        return plan.invoke(listener, plan.bind(message));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.CountingListener;
+import io.micronaut.natsstreaming.benchmark.Order;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.nats.streaming.StreamingConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+
+/**
+ * Publishes batches of orders on the embedded connection and waits until the listener processed them, covering
+ * publish, delivery, binding, invocation and ack.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class EmbeddedThroughputBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private ApplicationContext context;
+
+    private StreamingConnection connection;
+
+    private CountingListener listener;
+
+    private byte[] body;
+
+    /**
+     * Starts the context with the embedded connection.
+     */
+    @Setup
+    public void setup() {
+        context = ApplicationContext.run(Collections.singletonMap(EmbeddedStreamingConnectionConfig.ENABLED, "true"));
+        connection = context.getBean(StreamingConnection.class);
+        listener = context.getBean(CountingListener.class);
+        body = context.getBean(NatsMessageSerDesRegistry.class)
+                .findSerdes(Argument.of(Order.class)).get().serialize(Order.sample());
+    }
+
+    /**
+     * Stops the context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Publishes a batch and waits for its delivery.
+     *
+     * @throws Exception if the publish fails
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void publishAndConsume() throws Exception {
+        final long target = listener.getReceived() + BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            connection.publish(CountingListener.SUBJECT, body);
+        }
+        while (listener.getReceived() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.BenchmarkMessage;
+import io.micronaut.natsstreaming.benchmark.FakeStreamingConnection;
+import io.micronaut.natsstreaming.benchmark.Order;
+import io.micronaut.natsstreaming.benchmark.OrderListener;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.nats.streaming.MessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the full message handler registered by {@link NatsConsumerAdvice}: binding, invocation and ack.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class ListenerHandlerBenchmark {
+
+    private ApplicationContext context;
+
+    private MessageHandler handler;
+
+    private BenchmarkMessage message;
+
+    /**
+     * Starts the context, which subscribes the listener on the fake connection.
+     */
+    @Setup
+    public void setup() {
+        context = ApplicationContext.run();
+        handler = context.getBean(FakeStreamingConnection.class).handler(OrderListener.SUBJECT);
+        byte[] body = context.getBean(NatsMessageSerDesRegistry.class)
+                .findSerdes(Argument.of(Order.class)).get().serialize(Order.sample());
+        message = new BenchmarkMessage(OrderListener.SUBJECT, body, 1L);
+    }
+
+    /**
+     * Stops the context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Delivers one message to the listener.
+     */
+    @Benchmark
+    public void onMessage() {
+        handler.onMessage(message);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.BenchmarkMessage;
+import io.micronaut.natsstreaming.benchmark.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link IntrospectedJsonNatsMessageSerDes} with the payload of {@link JsonSerDesBenchmark}.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class IntrospectedJsonSerDesBenchmark {
+
+    private final Argument<Object> argument = (Argument) Argument.of(Order.class);
+
+    private IntrospectedJsonNatsMessageSerDes serDes;
+
+    private Order order;
+
+    private BenchmarkMessage message;
+
+    /**
+     * Serializes the sample order once.
+     */
+    @Setup
+    public void setup() {
+        serDes = new IntrospectedJsonNatsMessageSerDes(new ObjectMapper());
+        order = Order.sample();
+        message = new BenchmarkMessage("orders", serDes.serialize(order), 1L);
+    }
+
+    /**
+     * @return the serialized order
+     */
+    @Benchmark
+    public byte[] serialize() {
+        return serDes.serialize(order);
+    }
+
+    /**
+     * @return the deserialized order
+     */
+    @Benchmark
+    public Object deserialize() {
+        return serDes.deserialize(message, argument);
+    }
+}
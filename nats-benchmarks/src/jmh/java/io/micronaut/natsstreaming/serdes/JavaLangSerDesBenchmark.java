@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.BenchmarkMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Measures every inner serdes of {@link JavaLangNatsMessageSerDes}, both through the outer serdes, which looks the
+ * inner one up on every call, and directly.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class JavaLangSerDesBenchmark {
+
+    @Param({"String", "Boolean", "Short", "Integer", "Long", "Float", "Double", "ByteArray", "ByteBuffer", "UUID"})
+    private String type;
+
+    private JavaLangNatsMessageSerDes serDes;
+
+    private NatsMessageSerDes<Object> inner;
+
+    private Argument<Object> argument;
+
+    private Object value;
+
+    private BenchmarkMessage message;
+
+    /**
+     * Creates the value and the message of the selected type.
+     */
+    @Setup
+    public void setup() {
+        serDes = new JavaLangNatsMessageSerDes();
+        switch (type) {
+            case "String":
+                value = "a string payload of moderate length";
+                break;
+            case "Boolean":
+                value = Boolean.TRUE;
+                break;
+            case "Short":
+                value = (short) 42;
+                break;
+            case "Integer":
+                value = 42;
+                break;
+            case "Long":
+                value = 42L;
+                break;
+            case "Float":
+                value = 4.2f;
+                break;
+            case "Double":
+                value = 4.2d;
+                break;
+            case "ByteArray":
+                value = "bytes".getBytes(StandardCharsets.UTF_8);
+                break;
+            case "ByteBuffer":
+                value = ByteBuffer.wrap("bytes".getBytes(StandardCharsets.UTF_8));
+                break;
+            default:
+                value = UUID.randomUUID();
+        }
+        argument = (Argument<Object>) Argument.of(value.getClass());
+        inner = serDes.findSerDes(argument);
+        message = new BenchmarkMessage("subject", inner.serialize(value), 1L);
+    }
+
+    /**
+     * @return the serialized value
+     */
+    @Benchmark
+    public byte[] serialize() {
+        return serDes.serialize(value);
+    }
+
+    /**
+     * @return the deserialized value
+     */
+    @Benchmark
+    public Object deserialize() {
+        return serDes.deserialize(message, argument);
+    }
+
+    /**
+     * @return the value serialized by the inner serdes
+     */
+    @Benchmark
+    public byte[] serializeInner() {
+        return inner.serialize(value);
+    }
+
+    /**
+     * @return the value deserialized by the inner serdes
+     */
+    @Benchmark
+    public Object deserializeInner() {
+        return inner.deserialize(message, argument);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.benchmark.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Measures the serdes lookup of {@link DefaultNatsMessageSerDesRegistry} for the first, the last java type and a
+ * json type, by argument and by runtime class.
+ *
+ * @author alisson
+ */
+@State(Scope.Benchmark)
+public class SerDesRegistryBenchmark {
+
+    private final Argument<String> stringArgument = Argument.of(String.class);
+
+    private final Argument<UUID> uuidArgument = Argument.of(UUID.class);
+
+    private final Argument<Order> orderArgument = Argument.of(Order.class);
+
+    private DefaultNatsMessageSerDesRegistry registry;
+
+    /**
+     * Creates the registry with the default serdes.
+     */
+    @Setup
+    public void setup() {
+        registry = new DefaultNatsMessageSerDesRegistry(
+                new JavaLangNatsMessageSerDes(), new JsonNatsMessageSerDes(new ObjectMapper()));
+    }
+
+    /**
+     * @return the serdes of a string
+     */
+    @Benchmark
+    public Optional<NatsMessageSerDes<String>> findString() {
+        return registry.findSerdes(stringArgument);
+    }
+
+    /**
+     * @return the serdes of a uuid
+     */
+    @Benchmark
+    public Optional<NatsMessageSerDes<UUID>> findUuid() {
+        return registry.findSerdes(uuidArgument);
+    }
+
+    /**
+     * @return the serdes of a json payload
+     */
+    @Benchmark
+    public Optional<NatsMessageSerDes<Order>> findJson() {
+        return registry.findSerdes(orderArgument);
+    }
+
+    /**
+     * @return the serdes of a json payload looked up by its class, as done when publishing
+     */
+    @Benchmark
+    public Optional<NatsMessageSerDes<Order>> findJsonByClass() {
+        return registry.findSerdes(Order.class);
+    }
+}
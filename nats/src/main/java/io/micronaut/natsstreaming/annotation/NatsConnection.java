@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Selects the connection of a {@link NatsStreamingListener} or a {@link NatsStreamingClient}, among the connections
+ * configured under {@code nats.connections}. Without it, the default connection or its pool is used.
+ *
+ * @author alisson
+ */
+@Documented
+@Retention(RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface NatsConnection {
+
+    /**
+     * The name of the default connection, configured under {@code nats}.
+     */
+    String DEFAULT_CONNECTION = "default";
+
+    /**
+     * @return the connection name
+     */
+    String value() default DEFAULT_CONNECTION;
+}
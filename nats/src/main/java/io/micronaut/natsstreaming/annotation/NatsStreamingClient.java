@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.annotation;
+
+import io.micronaut.aop.Introduction;
+import io.micronaut.context.annotation.Executable;
+import io.micronaut.context.annotation.Type;
+import io.micronaut.natsstreaming.intercept.NatsStreamingClientIntroductionAdvice;
+
+import javax.inject.Singleton;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks an interface whose methods publish to nats streaming. Each method declares its subject with {@link Subject},
+ * on the method or on a {@link String} parameter, and its payload with {@link io.micronaut.messaging.annotation.Body}
+ * or as its only remaining parameter. Methods may return {@code void}, the message guid as a {@link String}, a
+ * {@link java.util.concurrent.CompletionStage} or a reactive type. The connection is selected with
+ * {@link NatsConnection} on the interface or the method. The methods are validated at startup.
+ *
+ * @author alisson
+ */
+@Documented
+@Retention(RUNTIME)
+@Target({ElementType.TYPE})
+@Introduction
+@Executable(processOnStartup = true)
+@Type(NatsStreamingClientIntroductionAdvice.class)
+@Singleton
+public @interface NatsStreamingClient {
+}
@@ -16,6 +16,7 @@
 package io.micronaut.natsstreaming.annotation;
 
 import io.micronaut.messaging.annotation.MessageListener;
+import io.micronaut.natsstreaming.intercept.NatsMessageKeyExtractor;
 
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
@@ -33,14 +34,152 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 @MessageListener
 public @interface NatsStreamingListener {
 
+    /**
+     * Name of the executor that runs listener methods on virtual threads (requires Java 21 or above).
+     */
+    String VIRTUAL_EXECUTOR = "virtual";
+
+    /**
+     * The default capacity of the executor handoff queue.
+     */
+    int DEFAULT_EXECUTOR_QUEUE_SIZE = 256;
+
+    /**
+     * The default delay before the first retry of a failed message.
+     */
+    String DEFAULT_RETRY_DELAY = "100ms";
+
+    /**
+     * The default maximum delay between two retries of a failed message.
+     */
+    String DEFAULT_MAX_RETRY_DELAY = "10s";
+
     /**
      * @return the durableName
      */
     String durableName()  default "";
 
     /**
+     * Acks the messages once the method returns, or once the {@link java.util.concurrent.CompletionStage} or the
+     * reactive type it returns completes successfully.
+     *
      * @return boolean to tell enable or unabled
      */
     boolean enableAck() default false;
 
+    /**
+     * The name of the {@link java.util.concurrent.ExecutorService} bean that invokes the listener methods, for example
+     * {@code io} or {@link #VIRTUAL_EXECUTOR}. When empty the methods run on the nats dispatcher thread.
+     *
+     * @return the executor name
+     */
+    String executor() default "";
+
+    /**
+     * The maximum number of messages handed to the {@link #executor()} that are not processed yet. Once reached the
+     * nats dispatcher thread waits for a slot before accepting the next message.
+     *
+     * @return the capacity of the handoff queue
+     */
+    int executorQueueSize() default DEFAULT_EXECUTOR_QUEUE_SIZE;
+
+    /**
+     * The maximum number of messages the server sends without receiving their ack, for every method of the
+     * listener. Only throttles the server with {@link #enableAck()}. When not set and an {@link #executor()} is
+     * used or the methods complete asynchronously, it defaults to the {@link #executorQueueSize()} so that a slow
+     * listener holds the messages on the server.
+     *
+     * @return the max in flight, a negative value keeps the default
+     */
+    int maxInFlight() default -1;
+
+    /**
+     * The time the server waits for an ack before sending the message again, for example {@code 30s}.
+     *
+     * @return the ack wait, empty keeps the default
+     */
+    String ackWait() default "";
+
+    /**
+     * The number of ordered lanes. When set, messages are spread across the lanes by the hash of their key: messages
+     * with the same key are processed one at a time and in order, messages with different keys run in parallel. A
+     * lane waits for the asynchronous completion of a message, its retries and its dead lettering before the next
+     * one. The lanes run on the {@link #executor()}, or on dedicated threads when none is set, and each lane holds up
+     * to {@link #executorQueueSize()} pending messages. Not supported with batch listeners.
+     *
+     * @return the number of lanes, 0 disables ordered dispatch
+     */
+    int lanes() default 0;
+
+    /**
+     * The top level field of the JSON body used as ordering key, for example {@code accountId}.
+     *
+     * @return the field name, empty when the key comes from the {@link #keyExtractor()}
+     */
+    String orderingKey() default "";
+
+    /**
+     * The bean extracting the ordering key of the messages, takes precedence over the {@link #orderingKey()}.
+     *
+     * @return the key extractor type, {@link NatsMessageKeyExtractor} itself when not set
+     */
+    Class<? extends NatsMessageKeyExtractor> keyExtractor() default NatsMessageKeyExtractor.class;
+
+    /**
+     * The number of times a message is invoked again when the method fails, or completes exceptionally. The retries
+     * are scheduled with an exponential backoff and do not hold the nats dispatcher thread: after the delay they run
+     * on the {@link #executor()} or the thread of the ordered lane of the message. The total delay should stay below
+     * the {@link #ackWait()}, after which the server delivers the message again.
+     *
+     * @return the number of retries, 0 disables the retries
+     */
+    int maxRetries() default 0;
+
+    /**
+     * The delay before the first retry, doubled for every following one, for example {@code 200ms}.
+     *
+     * @return the delay before the first retry
+     */
+    String retryDelay() default DEFAULT_RETRY_DELAY;
+
+    /**
+     * The maximum delay between two retries, for example {@code 5s}.
+     *
+     * @return the maximum delay between two retries
+     */
+    String maxRetryDelay() default DEFAULT_MAX_RETRY_DELAY;
+
+    /**
+     * The subject receiving the messages that still fail once the {@link #maxRetries()} are exhausted, or that
+     * cannot be bound to the method. The message is republished in a JSON envelope holding the original subject,
+     * sequence, the error and the body in base64, then acked. When empty the message is left to the redelivery.
+     *
+     * @return the dead letter subject
+     */
+    String deadLetterSubject() default "";
+
+    /**
+     * Skips the messages already processed by the method: their redeliveries are acked without deserializing the
+     * body nor invoking the method. The message id is read by the {@link #deduplicationKeyExtractor()}, or from the
+     * {@link #deduplicationKey()} field, or is the subject and the sequence of the message. The ids are remembered
+     * within the limits configured under {@code nats.deduplication}. Not supported with batch listeners.
+     *
+     * @return true to deduplicate the messages
+     */
+    boolean deduplicate() default false;
+
+    /**
+     * The top level field of the JSON body holding the message id, for example {@code eventId}.
+     *
+     * @return the field name, empty when the id comes from the {@link #deduplicationKeyExtractor()} or the sequence
+     */
+    String deduplicationKey() default "";
+
+    /**
+     * The bean extracting the message ids, takes precedence over the {@link #deduplicationKey()}.
+     *
+     * @return the key extractor type, {@link NatsMessageKeyExtractor} itself when not set
+     */
+    Class<? extends NatsMessageKeyExtractor> deduplicationKeyExtractor() default NatsMessageKeyExtractor.class;
+
 }
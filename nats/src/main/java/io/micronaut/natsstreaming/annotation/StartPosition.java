@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.annotation;
+
+/**
+ * Where a new subscription starts receiving messages.
+ *
+ * @author alisson
+ */
+public enum StartPosition {
+
+    /**
+     * Only messages published after the subscription.
+     */
+    NEW_ONLY,
+
+    /**
+     * The last message stored, then the new ones.
+     */
+    LAST_RECEIVED,
+
+    /**
+     * Every message stored.
+     */
+    FIRST,
+
+    /**
+     * From the configured start sequence.
+     */
+    SEQUENCE,
+
+    /**
+     * The messages stored within the configured start time delta.
+     */
+    TIME_DELTA
+}
@@ -30,6 +30,11 @@ import java.lang.annotation.*;
 @Bindable
 public @interface Subject {
 
+    /**
+     * The default time to wait before delivering an incomplete batch.
+     */
+    String DEFAULT_BATCH_TIMEOUT = "1s";
+
     /**
      * @return The subject to subscribe to.
      */
@@ -43,4 +48,49 @@ public @interface Subject {
     @AliasFor(annotation = NatsStreamingListener.class, member = "queue")
     String queueGroup() default "";
 
+    /**
+     * The number of messages delivered to a single invocation. When greater than zero the method must declare a
+     * single {@link java.util.List} argument of payloads or of {@link io.nats.streaming.Message}. With manual acks the
+     * messages of a batch are acked together after the method returns.
+     *
+     * @return the batch size, 0 disables batching
+     */
+    int batchSize() default 0;
+
+    /**
+     * The maximum time to wait for a batch to fill up, for example {@code 500ms}.
+     *
+     * @return the batch timeout
+     */
+    String batchTimeout() default DEFAULT_BATCH_TIMEOUT;
+
+    /**
+     * Overrides {@link NatsStreamingListener#maxInFlight()} for this subject.
+     *
+     * @return the max in flight, a negative value keeps the listener value
+     */
+    int maxInFlight() default -1;
+
+    /**
+     * Overrides {@link NatsStreamingListener#ackWait()} for this subject.
+     *
+     * @return the ack wait, empty keeps the listener value
+     */
+    String ackWait() default "";
+
+    /**
+     * @return where a new subscription starts receiving messages
+     */
+    StartPosition startPosition() default StartPosition.NEW_ONLY;
+
+    /**
+     * @return the first sequence delivered with {@link StartPosition#SEQUENCE}
+     */
+    long startSequence() default 0;
+
+    /**
+     * @return how far back in time delivery starts with {@link StartPosition#TIME_DELTA}, for example {@code 1h}
+     */
+    String startTimeDelta() default "";
+
 }
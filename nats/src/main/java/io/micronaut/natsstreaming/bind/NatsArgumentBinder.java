@@ -16,10 +16,23 @@
 package io.micronaut.natsstreaming.bind;
 
 import io.micronaut.core.bind.ArgumentBinder;
+import io.micronaut.core.type.Argument;
 import io.nats.streaming.Message;
 
 /**
  * @param <T>
  * @author alisson
  */
-public interface NatsArgumentBinder<T> extends ArgumentBinder<T, Message> { }
+public interface NatsArgumentBinder<T> extends ArgumentBinder<T, Message> {
+
+    /**
+     * Returns a binder specialised for the given argument. It is called once per listener argument when the
+     * subscription is created, so any lookup that only depends on the argument should happen here.
+     *
+     * @param argument The argument to bind
+     * @return the binder to use for every message
+     */
+    default ArgumentBinder<T, Message> prepare(Argument<T> argument) {
+        return this;
+    }
+}
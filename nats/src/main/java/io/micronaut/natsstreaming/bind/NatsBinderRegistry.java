@@ -71,4 +71,20 @@ public class NatsBinderRegistry implements ArgumentBinderRegistry<Message> {
         }
         return Optional.of((ArgumentBinder<T, Message>) defaultBinder);
     }
+
+    /**
+     * Finds the binder for the argument and lets it resolve everything that does not depend on the message.
+     *
+     * @param argument The argument to bind
+     * @param <T>      The argument type
+     * @return the binder to use for every message
+     */
+    public <T> ArgumentBinder<T, Message> prepareArgumentBinder(Argument<T> argument) {
+        ArgumentBinder<T, Message> binder = findArgumentBinder(argument, null)
+                .orElse((ArgumentBinder<T, Message>) defaultBinder);
+        if (binder instanceof NatsArgumentBinder) {
+            return ((NatsArgumentBinder<T>) binder).prepare(argument);
+        }
+        return binder;
+    }
 }
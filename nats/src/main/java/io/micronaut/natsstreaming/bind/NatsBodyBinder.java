@@ -15,9 +15,11 @@
  */
 package io.micronaut.natsstreaming.bind;
 
+import io.micronaut.core.bind.ArgumentBinder;
 import io.micronaut.core.convert.ArgumentConversionContext;
 import io.micronaut.core.type.Argument;
 import io.micronaut.messaging.annotation.Body;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDes;
 import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
 import io.nats.streaming.Message;
 
@@ -25,6 +27,9 @@ import javax.inject.Singleton;
 import java.util.Optional;
 
 /**
+ * Binds the message body. The listeners receive the messages already decompressed by the
+ * {@link io.micronaut.natsstreaming.compression.NatsPayloadCodec}, once per message.
+ *
  * @author alisson
  */
 @Singleton
@@ -59,4 +64,24 @@ public class NatsBodyBinder implements NatsAnnotatedArgumentBinder<Body> {
         final Optional<Object> finalMessage = message;
         return () -> finalMessage;
     }
+
+    @Override
+    public ArgumentBinder<Object, Message> prepare(Argument<Object> argument) {
+        if (argument.getType().equals(Message.class)) {
+            return (context, messageState) -> {
+                final Optional<Object> body = Optional.of(messageState);
+                return () -> body;
+            };
+        }
+        final Optional<NatsMessageSerDes<Object>> serDes = serDesRegistry.findSerdes(argument);
+        if (serDes.isEmpty()) {
+            return (context, messageState) -> Optional::empty;
+        }
+        final NatsMessageSerDes<Object> resolved = serDes.get();
+        return (context, messageState) -> {
+            final Optional<Object> body = Optional.ofNullable(
+                    resolved.deserialize(messageState, argument));
+            return () -> body;
+        };
+    }
 }
@@ -15,7 +15,9 @@
  */
 package io.micronaut.natsstreaming.bind;
 
+import io.micronaut.core.bind.ArgumentBinder;
 import io.micronaut.core.convert.ArgumentConversionContext;
+import io.micronaut.core.type.Argument;
 import io.nats.streaming.Message;
 
 import javax.inject.Singleton;
@@ -41,4 +43,9 @@ public class NatsDefaultBinder implements NatsArgumentBinder<Object> {
     public BindingResult<Object> bind(ArgumentConversionContext<Object> context, Message messageState) {
         return bodyBinder.bind(context, messageState);
     }
+
+    @Override
+    public ArgumentBinder<Object, Message> prepare(Argument<Object> argument) {
+        return bodyBinder.prepare(argument);
+    }
 }
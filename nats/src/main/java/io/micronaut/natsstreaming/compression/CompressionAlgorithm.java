@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+/**
+ * The compression algorithms of the message bodies. The id is written in the envelope header.
+ *
+ * @author alisson
+ */
+public enum CompressionAlgorithm {
+
+    /**
+     * LZ4 block compression, requires {@code org.lz4:lz4-java}.
+     */
+    LZ4((byte) 1),
+
+    /**
+     * Zstandard compression, requires {@code com.github.luben:zstd-jni}.
+     */
+    ZSTD((byte) 2);
+
+    private final byte id;
+
+    /**
+     * @param id The id written in the envelope header
+     */
+    CompressionAlgorithm(byte id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the id written in the envelope header
+     */
+    public byte getId() {
+        return id;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+import io.nats.streaming.Message;
+import io.nats.streaming.Subscription;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * A received message exposing its decompressed body. Acking it acks the received message.
+ *
+ * @author alisson
+ */
+final class DecodedMessage extends Message {
+
+    private final Message message;
+
+    private final byte[] data;
+
+    /**
+     * @param message The received message
+     * @param data    The decompressed body
+     */
+    DecodedMessage(Message message, byte[] data) {
+        this.message = message;
+        this.data = data;
+    }
+
+    @Override
+    public String getSubject() {
+        return message.getSubject();
+    }
+
+    @Override
+    public String getReplyTo() {
+        return message.getReplyTo();
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSequence() {
+        return message.getSequence();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return message.getTimestamp();
+    }
+
+    @Override
+    public Instant getInstant() {
+        return message.getInstant();
+    }
+
+    @Override
+    public int getCrc32() {
+        return message.getCrc32();
+    }
+
+    @Override
+    public boolean isRedelivered() {
+        return message.isRedelivered();
+    }
+
+    @Override
+    public Subscription getSubscription() {
+        return message.getSubscription();
+    }
+
+    @Override
+    public void ack() throws IOException {
+        message.ack();
+    }
+}
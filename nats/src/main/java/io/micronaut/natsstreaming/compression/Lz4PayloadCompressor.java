@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4 block compression. The lz4-java compressors are stateless and shared by every thread.
+ *
+ * @author alisson
+ */
+final class Lz4PayloadCompressor implements PayloadCompressor {
+
+    /**
+     * The maximum ratio of the LZ4 block format, a compressed byte expands to 255 bytes at most.
+     */
+    private static final int MAX_RATIO = 255;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4SafeDecompressor decompressor;
+
+    /**
+     * Default constructor.
+     */
+    Lz4PayloadCompressor() {
+        final LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return compressor.maxCompressedLength(length);
+    }
+
+    @Override
+    public int maxDecompressedLength(int compressedLength) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) compressedLength * MAX_RATIO);
+    }
+
+    @Override
+    public int compress(byte[] src, byte[] dest, int destOffset) {
+        return compressor.compress(src, 0, src.length, dest, destOffset, dest.length - destOffset);
+    }
+
+    @Override
+    public int decompress(byte[] src, int srcOffset, byte[] dest) {
+        return decompressor.decompress(src, srcOffset, src.length - srcOffset, dest, 0, dest.length);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * @author alisson
+ */
+@ConfigurationProperties(NatsCompressionConfig.PREFIX)
+public class NatsCompressionConfig {
+
+    public static final String PREFIX = "nats.compression";
+
+    /**
+     * The default minimum body size compressed, in bytes.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * The default zstd compression level.
+     */
+    public static final int DEFAULT_LEVEL = 3;
+
+    private boolean enabled;
+
+    private CompressionAlgorithm algorithm = CompressionAlgorithm.LZ4;
+
+    private int threshold = DEFAULT_THRESHOLD;
+
+    private int level = DEFAULT_LEVEL;
+
+    /**
+     *
+     * @return whether the published bodies are compressed and the received ones decompressed, the services consuming compressed subjects must enable it
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *
+     * @return the algorithm compressing the published bodies
+     */
+    public CompressionAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     *
+     * @param algorithm
+     */
+    public void setAlgorithm(CompressionAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     *
+     * @return the minimum body size compressed, in bytes
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     *
+     * @param threshold
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     *
+     * @return the compression level, only used by zstd
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     *
+     * @param level
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+}
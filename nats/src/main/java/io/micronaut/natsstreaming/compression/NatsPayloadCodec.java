@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+import io.micronaut.context.exceptions.ConfigurationException;
+import io.micronaut.core.reflect.ClassUtils;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.nats.streaming.Message;
+
+import javax.inject.Singleton;
+
+/**
+ * Wraps the message bodies in the compression envelope. Bodies of at least
+ * {@link NatsCompressionConfig#getThreshold()} bytes are compressed when enabled, and kept only if smaller. The
+ * envelope starts with a magic header, the algorithm id and the original length on three bytes, so bodies above
+ * 16MB are never compressed. Bodies without the header are passed through, so compressed and plain messages can
+ * share a subject. Received bodies are only decoded when enabled, a plain body starting with the magic header is
+ * never altered by the services not using compression.
+ *
+ * @author alisson
+ */
+@Singleton
+public class NatsPayloadCodec {
+
+    /**
+     * The length of the envelope header.
+     */
+    public static final int HEADER_LENGTH = 8;
+
+    private static final byte[] MAGIC = {0x00, 'N', 'Z', 0x01};
+
+    private static final int MAX_LENGTH = 0xFFFFFF;
+
+    private static final int BUFFER_RETAINED_LENGTH = 1024 * 1024;
+
+    private final NatsCompressionConfig config;
+
+    private final PayloadCompressor compressor;
+
+    private final ThreadLocal<byte[]> buffer = new ThreadLocal<>();
+
+    private volatile PayloadCompressor lz4;
+
+    private volatile PayloadCompressor zstd;
+
+    /**
+     * Default constructor.
+     *
+     * @param config The compression configuration
+     */
+    public NatsPayloadCodec(NatsCompressionConfig config) {
+        this.config = config;
+        this.compressor = config.isEnabled() ? compressor(config.getAlgorithm(), true) : null;
+    }
+
+    /**
+     * @param data The serialized body
+     * @return the body to publish, compressed when enabled and above the threshold
+     */
+    public byte[] encode(byte[] data) {
+        if (compressor == null || data == null || data.length < config.getThreshold() || data.length > MAX_LENGTH) {
+            return data;
+        }
+        final int maxLength = HEADER_LENGTH + compressor.maxCompressedLength(data.length);
+        byte[] scratch = buffer.get();
+        if (scratch == null || scratch.length < maxLength) {
+            scratch = new byte[maxLength];
+            if (maxLength <= BUFFER_RETAINED_LENGTH) {
+                buffer.set(scratch);
+            }
+        }
+        final int compressedLength = compressor.compress(data, scratch, HEADER_LENGTH);
+        if (HEADER_LENGTH + compressedLength >= data.length) {
+            return data;
+        }
+        System.arraycopy(MAGIC, 0, scratch, 0, MAGIC.length);
+        scratch[4] = config.getAlgorithm().getId();
+        scratch[5] = (byte) (data.length >>> 16);
+        scratch[6] = (byte) (data.length >>> 8);
+        scratch[7] = (byte) data.length;
+        final byte[] encoded = new byte[HEADER_LENGTH + compressedLength];
+        System.arraycopy(scratch, 0, encoded, 0, encoded.length);
+        return encoded;
+    }
+
+    /**
+     * @return true if the published bodies are compressed and the received ones decoded
+     */
+    public boolean isEnabled() {
+        return compressor != null;
+    }
+
+    /**
+     * @param data The received body
+     * @return true if the body is in the compression envelope
+     */
+    public boolean isEncoded(byte[] data) {
+        if (data == null || data.length <= HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decompresses an enveloped body. The original length of the header is checked before it is allocated: an
+     * envelope is only kept when smaller than the body, and cannot expand beyond the ratio of its algorithm.
+     *
+     * @param data The received body
+     * @return the decompressed body, or the body itself if it is not in the envelope or compression is disabled
+     * @throws SerializationException if the envelope is corrupted or truncated
+     */
+    public byte[] decode(byte[] data) {
+        if (compressor == null || !isEncoded(data)) {
+            return data;
+        }
+        final PayloadCompressor decompressor = decompressor(data[4]);
+        final int length = ((data[5] & 0xFF) << 16) | ((data[6] & 0xFF) << 8) | (data[7] & 0xFF);
+        final int compressedLength = data.length - HEADER_LENGTH;
+        if (length <= data.length || length > decompressor.maxDecompressedLength(compressedLength)) {
+            throw new SerializationException("Corrupted compression envelope: the original length " + length
+                    + " does not match the compressed length " + compressedLength);
+        }
+        final byte[] decoded = new byte[length];
+        final int decompressed;
+        try {
+            decompressed = decompressor.decompress(data, HEADER_LENGTH, decoded);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Error decompressing the message body: " + e.getMessage());
+        }
+        if (decompressed != length) {
+            throw new SerializationException("Corrupted compression envelope: the body decompressed to "
+                    + decompressed + " bytes instead of " + length);
+        }
+        return decoded;
+    }
+
+    /**
+     * @param message The received message
+     * @return a message exposing the decompressed body, or the message itself if it is not in the envelope or
+     * compression is disabled
+     */
+    public Message decode(Message message) {
+        if (compressor == null) {
+            return message;
+        }
+        final byte[] data = message.getData();
+        return isEncoded(data) ? new DecodedMessage(message, decode(data)) : message;
+    }
+
+    /**
+     * @param id The algorithm id of the envelope
+     * @return the compressor
+     */
+    private PayloadCompressor decompressor(byte id) {
+        if (compressor != null && id == config.getAlgorithm().getId()) {
+            return compressor;
+        }
+        if (id == CompressionAlgorithm.LZ4.getId()) {
+            if (lz4 == null) {
+                lz4 = compressor(CompressionAlgorithm.LZ4, false);
+            }
+            return lz4;
+        }
+        if (id == CompressionAlgorithm.ZSTD.getId()) {
+            if (zstd == null) {
+                zstd = compressor(CompressionAlgorithm.ZSTD, false);
+            }
+            return zstd;
+        }
+        throw new SerializationException("Unknown compression algorithm [" + id + "] in the message body");
+    }
+
+    /**
+     * @param algorithm The algorithm
+     * @param publish   Whether the compressor is used to publish, reporting a missing library as a configuration
+     *                  error
+     * @return the compressor of the algorithm
+     */
+    private PayloadCompressor compressor(CompressionAlgorithm algorithm, boolean publish) {
+        final String requiredClass = algorithm == CompressionAlgorithm.LZ4
+                ? "net.jpountz.lz4.LZ4Factory" : "com.github.luben.zstd.Zstd";
+        if (!ClassUtils.isPresent(requiredClass, getClass().getClassLoader())) {
+            final String message = "The " + algorithm + " compression requires [" + requiredClass + "] on the classpath";
+            if (publish) {
+                throw new ConfigurationException(message);
+            }
+            throw new SerializationException(message);
+        }
+        return algorithm == CompressionAlgorithm.LZ4 ? new Lz4PayloadCompressor() : new ZstdPayloadCompressor(config.getLevel());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+/**
+ * Compresses and decompresses byte arrays, safe to use from several threads.
+ *
+ * @author alisson
+ */
+interface PayloadCompressor {
+
+    /**
+     * @param length The length of the data
+     * @return the maximum length of the compressed data
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * @param compressedLength The length of the compressed data
+     * @return the maximum length the compressed data can decompress to
+     */
+    int maxDecompressedLength(int compressedLength);
+
+    /**
+     * @param src       The data
+     * @param dest      The buffer receiving the compressed data
+     * @param destOffset The offset of the compressed data in the buffer
+     * @return the length of the compressed data
+     */
+    int compress(byte[] src, byte[] dest, int destOffset);
+
+    /**
+     * @param src       The buffer holding the compressed data
+     * @param srcOffset The offset of the compressed data
+     * @param dest      The buffer receiving the data, sized to the original length
+     * @return the length of the decompressed data
+     */
+    int decompress(byte[] src, int srcOffset, byte[] dest);
+}
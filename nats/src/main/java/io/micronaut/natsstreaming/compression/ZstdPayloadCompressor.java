@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+/**
+ * Zstandard compression. The native contexts are not thread safe and are kept per thread.
+ *
+ * @author alisson
+ */
+final class ZstdPayloadCompressor implements PayloadCompressor {
+
+    private final ThreadLocal<ZstdCompressCtx> compressContext;
+
+    private final ThreadLocal<ZstdDecompressCtx> decompressContext = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    /**
+     * @param level The compression level
+     */
+    ZstdPayloadCompressor(int level) {
+        this.compressContext = ThreadLocal.withInitial(() -> {
+            ZstdCompressCtx context = new ZstdCompressCtx();
+            context.setLevel(level);
+            return context;
+        });
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return (int) Zstd.compressBound(length);
+    }
+
+    @Override
+    public int maxDecompressedLength(int compressedLength) {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int compress(byte[] src, byte[] dest, int destOffset) {
+        return compressContext.get()
+                .compressByteArray(dest, destOffset, dest.length - destOffset, src, 0, src.length);
+    }
+
+    @Override
+    public int decompress(byte[] src, int srcOffset, byte[] dest) {
+        return decompressContext.get()
+                .decompressByteArray(dest, 0, dest.length, src, srcOffset, src.length - srcOffset);
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.nats.client.Connection;
+import io.nats.streaming.ConnectionLostHandler;
+import io.nats.streaming.Options;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The settings of a connection to the nats streaming server, shared by the default and the named connections.
+ *
+ * @author alisson
+ */
+public abstract class AbstractNatsStreamingConnectionConfig {
+
+    public static final String NATS_PROTOCOL = "nats://";
+
+    private String host = "localhost";
+
+    private int port = 4222;
+
+    private String  user;
+
+    private String  password;
+
+    private String  clientId;
+
+    private String  clusterId;
+
+    private Integer maxPubAcksInFlight;
+
+    private Duration pubAckWait;
+
+    private Duration connectWait;
+
+    private Duration pingInterval;
+
+    private Integer maxPingsOut;
+
+    private String discoverPrefix;
+
+    private List<String> servers = new ArrayList<>();
+
+    private Integer bufferSize;
+
+    private Duration reconnectWait;
+
+    private Integer maxReconnects;
+
+    private boolean asyncConnect;
+
+    private Duration connectRetryDelay = Duration.ofSeconds(1);
+
+    private Duration maxConnectRetryDelay = Duration.ofSeconds(30);
+
+    private int reconnectBufferSize = 1024;
+
+    /**
+     *
+     * @return the host
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     *
+     * @param host
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     *
+     * @return port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     *
+     * @param port
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     *
+     * @return user
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     *
+     * @param user
+     */
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    /**
+     *
+     * @return password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     *
+     * @param password
+     */
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    /**
+     *
+     * @return clientId
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     *
+     * @param clientId
+     */
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    /***
+     *
+     * @return clusterId
+     */
+    public String getClusterId() {
+        return clusterId;
+    }
+
+    /**
+     *
+     * @param clusterId
+     */
+    public void setClusterId(String clusterId) {
+        this.clusterId = clusterId;
+    }
+
+    /**
+     *
+     * @return the maximum number of publishes waiting for the server ack on the connection
+     */
+    public Integer getMaxPubAcksInFlight() {
+        return maxPubAcksInFlight;
+    }
+
+    /**
+     *
+     * @param maxPubAcksInFlight
+     */
+    public void setMaxPubAcksInFlight(Integer maxPubAcksInFlight) {
+        this.maxPubAcksInFlight = maxPubAcksInFlight;
+    }
+
+    /**
+     *
+     * @return how long the connection waits for the ack of a publish
+     */
+    public Duration getPubAckWait() {
+        return pubAckWait;
+    }
+
+    /**
+     *
+     * @param pubAckWait
+     */
+    public void setPubAckWait(Duration pubAckWait) {
+        this.pubAckWait = pubAckWait;
+    }
+
+    /**
+     *
+     * @return how long the connection waits for the server to accept it
+     */
+    public Duration getConnectWait() {
+        return connectWait;
+    }
+
+    /**
+     *
+     * @param connectWait
+     */
+    public void setConnectWait(Duration connectWait) {
+        this.connectWait = connectWait;
+    }
+
+    /**
+     *
+     * @return the interval of the pings to the streaming server
+     */
+    public Duration getPingInterval() {
+        return pingInterval;
+    }
+
+    /**
+     *
+     * @param pingInterval
+     */
+    public void setPingInterval(Duration pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    /**
+     *
+     * @return the number of pings without response before the connection is considered lost
+     */
+    public Integer getMaxPingsOut() {
+        return maxPingsOut;
+    }
+
+    /**
+     *
+     * @param maxPingsOut
+     */
+    public void setMaxPingsOut(Integer maxPingsOut) {
+        this.maxPingsOut = maxPingsOut;
+    }
+
+    /**
+     *
+     * @return the subject prefix used to discover the streaming server
+     */
+    public String getDiscoverPrefix() {
+        return discoverPrefix;
+    }
+
+    /**
+     *
+     * @param discoverPrefix
+     */
+    public void setDiscoverPrefix(String discoverPrefix) {
+        this.discoverPrefix = discoverPrefix;
+    }
+
+    /**
+     *
+     * @return the urls of the nats servers of the cluster, the host and port are used when empty
+     */
+    public List<String> getServers() {
+        return servers;
+    }
+
+    /**
+     *
+     * @param servers
+     */
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    /**
+     *
+     * @return the size of the socket buffers of the nats connection, in bytes
+     */
+    public Integer getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(Integer bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     *
+     * @return how long the nats connection waits between reconnect attempts
+     */
+    public Duration getReconnectWait() {
+        return reconnectWait;
+    }
+
+    /**
+     *
+     * @param reconnectWait
+     */
+    public void setReconnectWait(Duration reconnectWait) {
+        this.reconnectWait = reconnectWait;
+    }
+
+    /**
+     *
+     * @return the maximum number of reconnect attempts of the nats connection, -1 for unlimited
+     */
+    public Integer getMaxReconnects() {
+        return maxReconnects;
+    }
+
+    /**
+     *
+     * @param maxReconnects
+     */
+    public void setMaxReconnects(Integer maxReconnects) {
+        this.maxReconnects = maxReconnects;
+    }
+
+    /**
+     *
+     * @return true to connect in the background instead of blocking the startup
+     */
+    public boolean isAsyncConnect() {
+        return asyncConnect;
+    }
+
+    /**
+     *
+     * @param asyncConnect
+     */
+    public void setAsyncConnect(boolean asyncConnect) {
+        this.asyncConnect = asyncConnect;
+    }
+
+    /**
+     *
+     * @return the delay before retrying a failed background connect or reconnect
+     */
+    public Duration getConnectRetryDelay() {
+        return connectRetryDelay;
+    }
+
+    /**
+     *
+     * @param connectRetryDelay
+     */
+    public void setConnectRetryDelay(Duration connectRetryDelay) {
+        this.connectRetryDelay = connectRetryDelay;
+    }
+
+    /**
+     *
+     * @return the maximum delay between background connect or reconnect retries
+     */
+    public Duration getMaxConnectRetryDelay() {
+        return maxConnectRetryDelay;
+    }
+
+    /**
+     *
+     * @param maxConnectRetryDelay
+     */
+    public void setMaxConnectRetryDelay(Duration maxConnectRetryDelay) {
+        this.maxConnectRetryDelay = maxConnectRetryDelay;
+    }
+
+    /**
+     *
+     * @return the maximum number of publishes held while the connection is rebuilt, the default connection holds
+     * none when the publish spool is enabled
+     */
+    public int getReconnectBufferSize() {
+        return reconnectBufferSize;
+    }
+
+    /**
+     *
+     * @param reconnectBufferSize
+     */
+    public void setReconnectBufferSize(int reconnectBufferSize) {
+        this.reconnectBufferSize = reconnectBufferSize;
+    }
+
+    /**
+     *
+     * @return Options
+     */
+    public Options toOptions() {
+        return toOptions(clientId);
+    }
+
+    /**
+     *
+     * @param clientId The client id of the connection, unique per connection to the cluster
+     * @return Options
+     */
+    public Options toOptions(String clientId) {
+        return toOptions(clientId, null);
+    }
+
+    /**
+     *
+     * @param clientId       The client id of the connection, unique per connection to the cluster
+     * @param natsConnection The nats connection created from {@link #toNatsOptions()}, null to let the streaming
+     *                       client connect to the url
+     * @return Options
+     */
+    public Options toOptions(String clientId, @Nullable Connection natsConnection) {
+        return toOptions(clientId, natsConnection, null);
+    }
+
+    /**
+     *
+     * @param clientId              The client id of the connection, unique per connection to the cluster
+     * @param natsConnection        The nats connection created from {@link #toNatsOptions()}, null to let the
+     *                              streaming client connect to the url
+     * @param connectionLostHandler Notified when the streaming session is lost, may be null
+     * @return Options
+     */
+    public Options toOptions(String clientId, @Nullable Connection natsConnection,
+                             @Nullable ConnectionLostHandler connectionLostHandler) {
+        final Options.Builder builder = new Options.Builder()
+                .clusterId(clusterId)
+                .clientId(clientId);
+        if (connectionLostHandler != null) {
+            builder.connectionLostHandler(connectionLostHandler);
+        }
+        if (natsConnection != null) {
+            builder.natsConn(natsConnection);
+        } else {
+            builder.natsUrl(getUrl());
+        }
+        if (maxPubAcksInFlight != null) {
+            builder.maxPubAcksInFlight(maxPubAcksInFlight);
+        }
+        if (pubAckWait != null) {
+            builder.pubAckWait(pubAckWait);
+        }
+        if (connectWait != null) {
+            builder.connectWait(connectWait);
+        }
+        if (pingInterval != null) {
+            builder.pingInterval(pingInterval);
+        }
+        if (maxPingsOut != null) {
+            builder.maxPingsOut(maxPingsOut);
+        }
+        if (discoverPrefix != null) {
+            builder.discoverPrefix(discoverPrefix);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The options of the underlying nats connection, only needed when the servers or the nats connection settings
+     * are configured.
+     *
+     * @return the nats options, empty to let the streaming client connect to the url
+     */
+    public Optional<io.nats.client.Options> toNatsOptions() {
+        if (servers.isEmpty() && bufferSize == null && reconnectWait == null && maxReconnects == null) {
+            return Optional.empty();
+        }
+        final io.nats.client.Options.Builder builder = new io.nats.client.Options.Builder()
+                .servers(servers.isEmpty() ? new String[] {NATS_PROTOCOL + host + ":" + port} : servers.toArray(new String[0]));
+        if (Objects.nonNull(user) || Objects.nonNull(password)) {
+            builder.userInfo(user, password);
+        }
+        if (bufferSize != null) {
+            builder.bufferSize(bufferSize);
+        }
+        if (reconnectWait != null) {
+            builder.reconnectWait(reconnectWait);
+        }
+        if (maxReconnects != null) {
+            builder.maxReconnects(maxReconnects);
+        }
+        return Optional.of(builder.build());
+    }
+
+    /**
+     *
+     * @return url
+     */
+    private String getUrl() {
+        String url = null;
+        if (Objects.nonNull(user) || Objects.nonNull(password)) {
+            url = NATS_PROTOCOL + user + ":" + password + "@" + host + ":" + port;
+        } else {
+            url = NATS_PROTOCOL + host + ":" + port;
+        }
+        return url;
+    }
+}
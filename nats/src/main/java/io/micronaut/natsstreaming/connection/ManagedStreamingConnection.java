@@ -0,0 +1,469 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.natsstreaming.exception.NatsStreemingConnectionException;
+import io.nats.client.Connection;
+import io.nats.streaming.AckHandler;
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.Subscription;
+import io.nats.streaming.SubscriptionOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * A connection supervised for its whole life: it is established with an exponential backoff until the server is
+ * reachable, and rebuilt the same way whenever the streaming session is lost. Subscriptions are recorded with their
+ * options, durable names included, and created in parallel on the subscribe executor, on the current connection and
+ * again on every new one. A failed subscription is reported to its failure handler and retried with the connect
+ * backoff while its connection stays established. While disconnected,
+ * asynchronous publishes are held in a bounded buffer sent once connected, other publishes fail with an
+ * {@link IOException}. Without buffer, asynchronous publishes fail the same way, letting the publish spool keep
+ * them.
+ *
+ * @author alisson
+ */
+public final class ManagedStreamingConnection implements StreamingConnection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ManagedStreamingConnection.class);
+
+    private final String name;
+
+    private final NatsStreamingConnector connector;
+
+    private final AbstractNatsStreamingConnectionConfig config;
+
+    private final String clientId;
+
+    private final int bufferSize;
+
+    private final Executor subscribeExecutor;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final List<ManagedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Queue<BufferedPublish> buffer = new ArrayDeque<>();
+
+    private volatile StreamingConnection delegate;
+
+    private volatile boolean closed;
+
+    /**
+     * @param name              The connection name, used in logs and health details
+     * @param connector         Creates and releases the underlying connections
+     * @param config            The connection configuration
+     * @param clientId          The client id of the connection
+     * @param bufferSize        The maximum number of publishes held while disconnected, 0 to fail them
+     * @param subscribeExecutor The executor creating the subscriptions
+     */
+    ManagedStreamingConnection(String name, NatsStreamingConnector connector,
+                               AbstractNatsStreamingConnectionConfig config, String clientId, int bufferSize,
+                               Executor subscribeExecutor) {
+        this.name = name;
+        this.connector = connector;
+        this.config = config;
+        this.clientId = clientId;
+        this.bufferSize = bufferSize;
+        this.subscribeExecutor = subscribeExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nats-connect-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the connection name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the client id of the connection
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return true while connected to the server
+     */
+    public boolean isConnected() {
+        return delegate != null;
+    }
+
+    /**
+     * @return the number of subscriptions waiting for the connection
+     */
+    public int getPendingSubscriptions() {
+        int pending = 0;
+        for (ManagedSubscription subscription : subscriptions) {
+            if (!subscription.isSubscribed()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the number of publishes held until the connection is rebuilt
+     */
+    public int getBufferedPublishes() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    @Override
+    public void publish(String subject, byte[] data) throws IOException, InterruptedException, TimeoutException {
+        connected().publish(subject, data);
+    }
+
+    @Override
+    public String publish(String subject, byte[] data, AckHandler ah)
+            throws IOException, InterruptedException, TimeoutException {
+        final StreamingConnection connection = delegate;
+        if (connection != null) {
+            return connection.publish(subject, data, ah);
+        }
+        final StreamingConnection current;
+        synchronized (buffer) {
+            current = delegate;
+            if (current == null) {
+                if (closed || buffer.size() >= bufferSize) {
+                    throw new IOException("The connection [" + name + "] is not established and its publish "
+                            + "buffer is " + (closed ? "closed" : "full"));
+                }
+                buffer.add(new BufferedPublish(subject, data, ah));
+                return null;
+            }
+        }
+        return current.publish(subject, data, ah);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb)
+            throws IOException, InterruptedException, TimeoutException {
+        return subscribe(subject, null, cb, null);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb, SubscriptionOptions opts)
+            throws IOException, InterruptedException, TimeoutException {
+        return subscribe(subject, null, cb, opts);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, String queue, MessageHandler cb)
+            throws IOException, InterruptedException, TimeoutException {
+        return subscribe(subject, queue, cb, null);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, String queue, MessageHandler cb, SubscriptionOptions opts)
+            throws IOException, InterruptedException, TimeoutException {
+        return subscribe(subject, queue, cb, opts, null);
+    }
+
+    /**
+     * Records a subscription, created asynchronously on the current connection and on every new one.
+     *
+     * @param subject        The subject
+     * @param queue          The queue group, may be null
+     * @param cb             The message handler
+     * @param opts           The subscription options, may be null
+     * @param failureHandler Receives every failed attempt to create the subscription, may be null
+     * @return the subscription
+     * @throws IOException if the connection is closed
+     */
+    public Subscription subscribe(String subject, String queue, MessageHandler cb, SubscriptionOptions opts,
+                                  Consumer<Exception> failureHandler) throws IOException {
+        if (closed) {
+            throw new IOException("The connection [" + name + "] is closed");
+        }
+        final ManagedSubscription subscription =
+                new ManagedSubscription(this, subject, queue, cb, opts, failureHandler);
+        subscriptions.add(subscription);
+        final StreamingConnection connection = delegate;
+        if (connection != null) {
+            subscribeExecutor.execute(() -> subscribe(subscription, connection, config.getConnectRetryDelay()));
+        }
+        return subscription;
+    }
+
+    @Override
+    public Connection getNatsConnection() {
+        final StreamingConnection connection = delegate;
+        return connection == null ? null : connection.getNatsConnection();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        final StreamingConnection connection = delegate;
+        delegate = null;
+        if (connection != null) {
+            connector.release(connection);
+        }
+        failBuffered(new IOException("The connection [" + name + "] is closed"));
+    }
+
+    /**
+     * Connects on the calling thread.
+     *
+     * @throws NatsStreemingConnectionException if the connection fails
+     */
+    void connectNow() {
+        established(connector.connect(config, clientId, this::connectionLost));
+    }
+
+    /**
+     * Starts connecting in the background.
+     */
+    void start() {
+        scheduler.execute(() -> connect(config.getConnectRetryDelay()));
+    }
+
+    /**
+     * Forgets a closed subscription.
+     *
+     * @param subscription The subscription
+     */
+    void release(ManagedSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Drops a lost connection and starts rebuilding it, its subscriptions pending until created on the new one.
+     *
+     * @param lost The lost connection
+     * @param e    The cause
+     */
+    private void connectionLost(StreamingConnection lost, Exception e) {
+        synchronized (buffer) {
+            if (closed || delegate != lost) {
+                return;
+            }
+            delegate = null;
+        }
+        for (ManagedSubscription subscription : subscriptions) {
+            subscription.lost(lost);
+        }
+        LOG.warn("Lost the connection [{}] to the nats streaming server, reconnecting", name, e);
+        scheduler.execute(() -> {
+            connector.release(lost);
+            connect(config.getConnectRetryDelay());
+        });
+    }
+
+    /**
+     * Connects, or schedules the next attempt with a doubled delay.
+     *
+     * @param nextDelay The delay before the next attempt if this one fails
+     */
+    private void connect(Duration nextDelay) {
+        if (closed) {
+            return;
+        }
+        final StreamingConnection connection;
+        try {
+            connection = connector.connect(config, clientId, this::connectionLost);
+        } catch (RuntimeException e) {
+            LOG.warn("Fail to connect [{}] to the nats streaming server, retrying in {}", name, nextDelay, e);
+            final Duration doubled = nextDelay.multipliedBy(2);
+            final Duration max = config.getMaxConnectRetryDelay();
+            scheduler.schedule(() -> connect(doubled.compareTo(max) > 0 ? max : doubled),
+                    nextDelay.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        LOG.info("Connected [{}] to the nats streaming server", name);
+        established(connection);
+    }
+
+    /**
+     * Sends the buffered publishes, then makes the connection current and subscribes every recorded subscription.
+     * The buffer is sent outside of its lock, publishes keep being buffered behind it until it is empty so the
+     * order is kept.
+     *
+     * @param connection The new connection
+     */
+    private void established(StreamingConnection connection) {
+        final List<BufferedPublish> pending = new ArrayList<>();
+        while (true) {
+            synchronized (buffer) {
+                if (closed) {
+                    connector.release(connection);
+                    return;
+                }
+                if (buffer.isEmpty()) {
+                    delegate = connection;
+                    break;
+                }
+                pending.addAll(buffer);
+                buffer.clear();
+            }
+            for (BufferedPublish publish : pending) {
+                publish.send(connection);
+            }
+            pending.clear();
+        }
+        subscribeAll(connection);
+    }
+
+    /**
+     * Creates every recorded subscription on the connection, in parallel on the subscribe executor.
+     *
+     * @param connection The connection
+     */
+    private void subscribeAll(StreamingConnection connection) {
+        final CompletableFuture<?>[] subscribed = subscriptions.stream()
+                .map(subscription -> CompletableFuture.runAsync(
+                        () -> subscribe(subscription, connection, config.getConnectRetryDelay()), subscribeExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(subscribed).join();
+    }
+
+    /**
+     * Creates a recorded subscription on the connection. A failure is reported to the subscription and the attempt
+     * scheduled again with a doubled delay, until the connection is lost or closed, a new connection subscribing
+     * again.
+     *
+     * @param subscription The subscription
+     * @param connection   The connection
+     * @param nextDelay    The delay before the next attempt if this one fails
+     */
+    private void subscribe(ManagedSubscription subscription, StreamingConnection connection, Duration nextDelay) {
+        try {
+            subscription.subscribe(connection);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            LOG.error("Fail to subscribe [{}] on the connection [{}], retrying in {}",
+                    subscription.getSubject(), name, nextDelay, e);
+            subscription.failed(e);
+        }
+        if (closed || delegate != connection) {
+            return;
+        }
+        final Duration doubled = nextDelay.multipliedBy(2);
+        final Duration max = config.getMaxConnectRetryDelay();
+        try {
+            scheduler.schedule(() -> subscribeExecutor.execute(() -> {
+                if (!closed && delegate == connection) {
+                    subscribe(subscription, connection, doubled.compareTo(max) > 0 ? max : doubled);
+                }
+            }), nextDelay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("The connection [{}] was closed before retrying the subscription [{}]",
+                    name, subscription.getSubject());
+        }
+    }
+
+    /**
+     * Fails the buffered publishes.
+     *
+     * @param e The cause
+     */
+    private void failBuffered(Exception e) {
+        synchronized (buffer) {
+            BufferedPublish publish;
+            while ((publish = buffer.poll()) != null) {
+                publish.fail(e);
+            }
+        }
+    }
+
+    /**
+     * @return the connection
+     * @throws IOException if not connected
+     */
+    private StreamingConnection connected() throws IOException {
+        final StreamingConnection connection = delegate;
+        if (connection == null) {
+            throw new IOException(closed ? "The connection [" + name + "] is closed"
+                    : "The connection [" + name + "] is not established");
+        }
+        return connection;
+    }
+
+    /**
+     * A publish held while the connection is rebuilt.
+     */
+    private static final class BufferedPublish {
+
+        private final String subject;
+
+        private final byte[] data;
+
+        private final AckHandler ackHandler;
+
+        /**
+         * @param subject    The subject
+         * @param data       The message body
+         * @param ackHandler The ack handler, may be null
+         */
+        private BufferedPublish(String subject, byte[] data, AckHandler ackHandler) {
+            this.subject = subject;
+            this.data = data;
+            this.ackHandler = ackHandler;
+        }
+
+        /**
+         * @param connection The connection to publish on
+         */
+        private void send(StreamingConnection connection) {
+            try {
+                connection.publish(subject, data, ackHandler);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * @param e The cause
+         */
+        private void fail(Exception e) {
+            if (ackHandler != null) {
+                ackHandler.onAck(null, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.Subscription;
+import io.nats.streaming.SubscriptionOptions;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * A subscription of a {@link ManagedStreamingConnection}, recorded so it can be created on every new connection.
+ *
+ * @author alisson
+ */
+final class ManagedSubscription implements Subscription {
+
+    private final ManagedStreamingConnection connection;
+
+    private final String subject;
+
+    private final String queue;
+
+    private final MessageHandler handler;
+
+    private final SubscriptionOptions options;
+
+    private final Consumer<Exception> failureHandler;
+
+    private StreamingConnection subscribedTo;
+
+    private Subscription delegate;
+
+    private boolean closed;
+
+    /**
+     * @param connection     The managed connection
+     * @param subject        The subject
+     * @param queue          The queue group, may be null
+     * @param handler        The message handler
+     * @param options        The subscription options
+     * @param failureHandler Receives the failed attempts to subscribe, may be null
+     */
+    ManagedSubscription(ManagedStreamingConnection connection, String subject, String queue, MessageHandler handler,
+                        SubscriptionOptions options, Consumer<Exception> failureHandler) {
+        this.connection = connection;
+        this.subject = subject;
+        this.queue = queue;
+        this.handler = handler;
+        this.options = options == null ? new SubscriptionOptions.Builder().build() : options;
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Subscribes on the given connection, unless already subscribed to it.
+     *
+     * @param target The connection
+     * @throws IOException          if the subscription fails
+     * @throws InterruptedException if interrupted while subscribing
+     * @throws TimeoutException     if the server does not answer
+     */
+    synchronized void subscribe(StreamingConnection target) throws IOException, InterruptedException, TimeoutException {
+        if (closed || subscribedTo == target) {
+            return;
+        }
+        delegate = target.subscribe(subject, queue, handler, options);
+        subscribedTo = target;
+    }
+
+    /**
+     * Forgets the subscription created on a lost connection, pending until subscribed on the next one.
+     *
+     * @param lost The lost connection
+     */
+    synchronized void lost(StreamingConnection lost) {
+        if (subscribedTo == lost) {
+            delegate = null;
+            subscribedTo = null;
+        }
+    }
+
+    /**
+     * Reports a failed attempt to subscribe.
+     *
+     * @param e The cause
+     */
+    void failed(Exception e) {
+        if (failureHandler != null) {
+            failureHandler.accept(e);
+        }
+    }
+
+    /**
+     * @return true if the subscription is active on a connection
+     */
+    synchronized boolean isSubscribed() {
+        return delegate != null;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public String getQueue() {
+        return queue;
+    }
+
+    @Override
+    public SubscriptionOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void unsubscribe() throws IOException {
+        close(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(false);
+    }
+
+    @Override
+    public synchronized void close(boolean unsubscribe) throws IOException {
+        closed = true;
+        connection.release(this);
+        if (delegate != null) {
+            delegate.close(unsubscribe);
+            delegate = null;
+        }
+        subscribedTo = null;
+    }
+}
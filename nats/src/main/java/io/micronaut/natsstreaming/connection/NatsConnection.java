@@ -15,13 +15,22 @@
  */
 package io.micronaut.natsstreaming.connection;
 
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.EachBean;
 import io.micronaut.context.annotation.Factory;
-import io.micronaut.natsstreaming.exception.NatsStreemingConnectionException;
-import io.nats.streaming.Options;
+import io.micronaut.context.annotation.Primary;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnection;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.micronaut.natsstreaming.publisher.spool.NatsPublishSpoolConfig;
+import io.micronaut.scheduling.TaskExecutors;
 import io.nats.streaming.StreamingConnection;
-import io.nats.streaming.StreamingConnectionFactory;
 
+import javax.annotation.PreDestroy;
+import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author alisson
@@ -29,19 +38,60 @@ import javax.inject.Singleton;
 @Factory
 public class NatsConnection {
 
+    private final NatsStreamingConnector connector;
+
+    /**
+     * @param ioExecutor The executor creating the subscriptions
+     */
+    public NatsConnection(@Named(TaskExecutors.IO) ExecutorService ioExecutor) {
+        this.connector = new NatsStreamingConnector(ioExecutor);
+    }
+
     /**
      * @param natsStreamingConnectionConfig
+     * @param spoolConfig The publish spool configuration, the spool replaces the reconnect buffer when enabled
      * @return StreamingConnection
      */
     @Singleton
-    public StreamingConnection createNatConnection(final NatsStreamingConnectionConfig natsStreamingConnectionConfig) {
-        final Options options = natsStreamingConnectionConfig.toOptions();
-        final StreamingConnectionFactory cf = new StreamingConnectionFactory(options);
-        try {
-            return cf.createConnection();
-        } catch (Exception e) {
-            throw new NatsStreemingConnectionException("Fail to connect to the server", e);
-        }
+    @Primary
+    @Bean(preDestroy = "close")
+    @Requires(property = EmbeddedStreamingConnectionConfig.ENABLED, notEquals = StringUtils.TRUE)
+    public StreamingConnection createNatConnection(final NatsStreamingConnectionConfig natsStreamingConnectionConfig,
+                                                   final NatsPublishSpoolConfig spoolConfig) {
+        return connector.open(natsStreamingConnectionConfig, natsStreamingConnectionConfig.getClientId(),
+                io.micronaut.natsstreaming.annotation.NatsConnection.DEFAULT_CONNECTION, spoolConfig.isEnabled());
+    }
+
+    /**
+     * @param namedConnectionConfig
+     * @return the connection configured under {@code nats.connections.<name>}, qualified by its name
+     */
+    @EachBean(NatsNamedConnectionConfig.class)
+    @Bean(preDestroy = "close")
+    @Requires(property = EmbeddedStreamingConnectionConfig.ENABLED, notEquals = StringUtils.TRUE)
+    public StreamingConnection createNamedConnection(final NatsNamedConnectionConfig namedConnectionConfig) {
+        return connector.open(namedConnectionConfig, namedConnectionConfig.getClientId(),
+                namedConnectionConfig.getName(), false);
+    }
+
+    /**
+     * @param embeddedConfig
+     * @return the in-JVM connection used instead of a server when {@code nats.embedded.enabled} is set
+     */
+    @Singleton
+    @Primary
+    @Bean(preDestroy = "close")
+    @Requires(property = EmbeddedStreamingConnectionConfig.ENABLED, value = StringUtils.TRUE)
+    public StreamingConnection createEmbeddedConnection(final EmbeddedStreamingConnectionConfig embeddedConfig) {
+        return new EmbeddedStreamingConnection(embeddedConfig.getMaxMessages());
+    }
+
+    /**
+     * Closes the nats connections created for the streaming connections, after these are closed.
+     */
+    @PreDestroy
+    public void close() {
+        connector.close();
     }
 
 }
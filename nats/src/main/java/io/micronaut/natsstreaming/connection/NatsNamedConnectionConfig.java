@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+
+/**
+ * A named connection, configured under {@code nats.connections.<name>} and selected with
+ * {@link io.micronaut.natsstreaming.annotation.NatsConnection}.
+ *
+ * @author alisson
+ */
+@EachProperty(NatsNamedConnectionConfig.PREFIX)
+public class NatsNamedConnectionConfig extends AbstractNatsStreamingConnectionConfig {
+
+    public static final String PREFIX = "nats.connections";
+
+    private final String name;
+
+    /**
+     * @param name The connection name
+     */
+    public NatsNamedConnectionConfig(@Parameter String name) {
+        this.name = name;
+    }
+
+    /**
+     *
+     * @return the connection name
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -16,150 +16,34 @@
 package io.micronaut.natsstreaming.connection;
 
 import io.micronaut.context.annotation.ConfigurationProperties;
-import io.nats.streaming.Options;
-
-import java.util.Objects;
 
 /**
+ * The default connection, configured under {@code nats}.
+ *
  * @author alisson
  */
-@ConfigurationProperties("nats")
-public class NatsStreamingConnectionConfig {
-
-    public static final String NATS_PROTOCOL = "nats://";
-
-    private String host = "localhost";
-
-    private int port = 4222;
-
-    private String  user;
-
-    private String  password;
-
-    private String  clientId;
-
-    private String  clusterId;
-
-    /**
-     *
-     * @return the host
-     */
-    public String getHost() {
-        return host;
-    }
-
-    /**
-     *
-     * @param host
-     */
-    public void setHost(String host) {
-        this.host = host;
-    }
-
-    /**
-     *
-     * @return port
-     */
-    public int getPort() {
-        return port;
-    }
-
-    /**
-     *
-     * @param port
-     */
-    public void setPort(int port) {
-        this.port = port;
-    }
-
-    /**
-     *
-     * @return user
-     */
-    public String getUser() {
-        return user;
-    }
+@ConfigurationProperties(NatsStreamingConnectionConfig.PREFIX)
+public class NatsStreamingConnectionConfig extends AbstractNatsStreamingConnectionConfig {
 
-    /**
-     *
-     * @param user
-     */
-    public void setUser(String user) {
-        this.user = user;
-    }
+    public static final String PREFIX = "nats";
 
-    /**
-     *
-     * @return password
-     */
-    public String getPassword() {
-        return password;
-    }
+    public static final String POOL_SIZE = PREFIX + ".pool-size";
 
-    /**
-     *
-     * @param password
-     */
-    public void setPassword(String password) {
-        this.password = password;
-    }
+    private int poolSize;
 
     /**
      *
-     * @return clientId
+     * @return the number of pooled connections sharing the subjects of the default connection, 0 disables the pool
      */
-    public String getClientId() {
-        return clientId;
-    }
-
-    /**
-     *
-     * @param clientId
-     */
-    public void setClientId(String clientId) {
-        this.clientId = clientId;
-    }
-
-    /***
-     *
-     * @return clusterId
-     */
-    public String getClusterId() {
-        return clusterId;
-    }
-
-    /**
-     *
-     * @param clusterId
-     */
-    public void setClusterId(String clusterId) {
-        this.clusterId = clusterId;
-    }
-
-    /**
-     *
-     * @return Options
-     */
-    public Options toOptions() {
-
-        return  new Options.Builder()
-                .clusterId(clusterId)
-                .clientId(clientId)
-                .natsUrl(getUrl())
-                .build();
+    public int getPoolSize() {
+        return poolSize;
     }
 
     /**
      *
-     * @return url
+     * @param poolSize
      */
-    private String getUrl() {
-        String url = null;
-        if (Objects.nonNull(user) || Objects.nonNull(password)) {
-            url = NATS_PROTOCOL + user + ":" + password + "@" + host + ":" + port;
-        } else {
-            url = NATS_PROTOCOL + host + ":" + port;
-        }
-        return url;
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.micronaut.natsstreaming.exception.NatsStreemingConnectionException;
+import io.micronaut.natsstreaming.publisher.spool.NatsPublishSpoolConfig;
+import io.micronaut.scheduling.TaskExecutors;
+import io.nats.streaming.StreamingConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Connections of the default configuration sharing its subjects, each with its own socket and dispatcher thread.
+ * A subject always maps to the same connection, so the subscriptions and publishes of a subject keep their order.
+ * The client id of each connection is the configured one followed by its index, so changing the pool size moves
+ * subjects to other client ids. The durable subscriptions outside a queue group, which the server keys by client
+ * id, are therefore kept on the default connection by {@link NatsStreamingConnections}. Enabled when
+ * {@value NatsStreamingConnectionConfig#POOL_SIZE} is above 0.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(condition = NatsStreamingConnectionPoolCondition.class)
+@Requires(property = EmbeddedStreamingConnectionConfig.ENABLED, notEquals = StringUtils.TRUE)
+public class NatsStreamingConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsStreamingConnectionPool.class);
+
+    private final NatsStreamingConnector connector;
+
+    private final StreamingConnection[] connections;
+
+    /**
+     * Default constructor, connects every pooled connection.
+     *
+     * @param config      The default connection configuration
+     * @param spoolConfig The publish spool configuration, the spool replaces the reconnect buffers when enabled
+     * @param ioExecutor  The executor creating the subscriptions
+     */
+    public NatsStreamingConnectionPool(NatsStreamingConnectionConfig config, NatsPublishSpoolConfig spoolConfig,
+                                       @Named(TaskExecutors.IO) ExecutorService ioExecutor) {
+        this.connector = new NatsStreamingConnector(ioExecutor);
+        this.connections = new StreamingConnection[config.getPoolSize()];
+        for (int i = 0; i < connections.length; i++) {
+            try {
+                connections[i] = connector.open(config, config.getClientId() + "-" + i, "pool-" + i,
+                        spoolConfig.isEnabled());
+            } catch (NatsStreemingConnectionException e) {
+                close();
+                throw new NatsStreemingConnectionException("Fail to connect the pooled connection " + i, e);
+            }
+        }
+    }
+
+    /**
+     * @param subject The subject
+     * @return the connection of the subject
+     */
+    public StreamingConnection select(String subject) {
+        final int hash = subject.hashCode();
+        return connections[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % connections.length];
+    }
+
+    /**
+     * @return the pooled connections, by index
+     */
+    public List<StreamingConnection> getConnections() {
+        return Collections.unmodifiableList(Arrays.asList(connections));
+    }
+
+    /**
+     * @return the number of connections
+     */
+    public int size() {
+        return connections.length;
+    }
+
+    /**
+     * Closes every connection.
+     */
+    @PreDestroy
+    public void close() {
+        for (StreamingConnection connection : connections) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    LOG.warn("Fail to close a pooled connection", e);
+                }
+            }
+        }
+        connector.close();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.context.condition.Condition;
+import io.micronaut.context.condition.ConditionContext;
+import io.micronaut.core.value.PropertyResolver;
+
+/**
+ * Enables the {@link NatsStreamingConnectionPool} only when {@value NatsStreamingConnectionConfig#POOL_SIZE} is
+ * above 0.
+ *
+ * @author alisson
+ */
+public final class NatsStreamingConnectionPoolCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context) {
+        return context.getBeanContext() instanceof PropertyResolver
+                && ((PropertyResolver) context.getBeanContext())
+                        .getProperty(NatsStreamingConnectionConfig.POOL_SIZE, Integer.class).orElse(0) > 0;
+    }
+}
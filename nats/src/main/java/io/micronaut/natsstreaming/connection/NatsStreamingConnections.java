@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.context.BeanContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import io.micronaut.natsstreaming.annotation.NatsConnection;
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnectionConfig;
+import io.micronaut.natsstreaming.exception.NatsStreemingConnectionException;
+import io.nats.streaming.StreamingConnection;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the connection used for a subject: the named connection when one is selected, otherwise the connection
+ * of the subject in the {@link NatsStreamingConnectionPool}, or the default connection. Durable subscriptions
+ * outside a queue group always use the default connection: the server keys them by client id, and the client ids of
+ * the pooled connections a subject maps to change with the pool size. With the embedded connection every name
+ * resolves to the embedded connection.
+ *
+ * @author alisson
+ */
+@Singleton
+public class NatsStreamingConnections {
+
+    private final BeanContext beanContext;
+
+    private final NatsStreamingConnectionPool pool;
+
+    private final boolean embedded;
+
+    private final Map<String, StreamingConnection> named = new ConcurrentHashMap<>();
+
+    private volatile StreamingConnection defaultConnection;
+
+    /**
+     * Default constructor.
+     *
+     * @param beanContext    The bean context
+     * @param pool           The connection pool, null when disabled
+     * @param embeddedConfig The embedded connection configuration
+     */
+    public NatsStreamingConnections(BeanContext beanContext, @Nullable NatsStreamingConnectionPool pool,
+                                    EmbeddedStreamingConnectionConfig embeddedConfig) {
+        this.beanContext = beanContext;
+        this.pool = pool;
+        this.embedded = embeddedConfig.isEnabled();
+    }
+
+    /**
+     * @param connectionName The connection name, null or {@link NatsConnection#DEFAULT_CONNECTION} for the default
+     * @param subject        The subject
+     * @return the connection
+     * @throws NatsStreemingConnectionException if no connection has the given name
+     */
+    public StreamingConnection get(@Nullable String connectionName, String subject) {
+        return get(connectionName, subject, false);
+    }
+
+    /**
+     * @param connectionName The connection name, null or {@link NatsConnection#DEFAULT_CONNECTION} for the default
+     * @param subject        The subject
+     * @param durable        Whether the connection is used by a durable subscription outside a queue group, which
+     *                       must keep the client id of the default connection
+     * @return the connection
+     * @throws NatsStreemingConnectionException if no connection has the given name
+     */
+    public StreamingConnection get(@Nullable String connectionName, String subject, boolean durable) {
+        if (connectionName == null || NatsConnection.DEFAULT_CONNECTION.equals(connectionName) || embedded) {
+            return pool != null && !durable ? pool.select(subject) : getDefault();
+        }
+        return named.computeIfAbsent(connectionName, name -> beanContext
+                .findBean(StreamingConnection.class, Qualifiers.byName(name))
+                .orElseThrow(() -> new NatsStreemingConnectionException(
+                        "No connection configured under [" + NatsNamedConnectionConfig.PREFIX + "." + name + "]")));
+    }
+
+    /**
+     * @return the default connection
+     */
+    private StreamingConnection getDefault() {
+        StreamingConnection connection = defaultConnection;
+        if (connection == null) {
+            connection = beanContext.getBean(StreamingConnection.class);
+            defaultConnection = connection;
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection;
+
+import io.micronaut.natsstreaming.exception.NatsStreemingConnectionException;
+import io.nats.client.Connection;
+import io.nats.client.Nats;
+import io.nats.streaming.ConnectionLostHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.StreamingConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Connects to the streaming server from a configuration. When nats connection settings are configured, the nats
+ * connection is created here and handed to the streaming client, which does not close it: the connector keeps it
+ * until {@link #close()}.
+ *
+ * @author alisson
+ */
+class NatsStreamingConnector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsStreamingConnector.class);
+
+    private final Queue<Connection> natsConnections = new ConcurrentLinkedQueue<>();
+
+    private final Executor subscribeExecutor;
+
+    /**
+     * @param subscribeExecutor The executor creating the subscriptions of the opened connections
+     */
+    NatsStreamingConnector(Executor subscribeExecutor) {
+        this.subscribeExecutor = subscribeExecutor;
+    }
+
+    /**
+     * Opens a connection rebuilt whenever the streaming session is lost, connecting in the background when
+     * {@link AbstractNatsStreamingConnectionConfig#isAsyncConnect()}.
+     *
+     * @param config   The connection configuration
+     * @param clientId The client id of the connection
+     * @param name     The connection name
+     * @param spooled  Whether the publish spool keeps the publishes failing while disconnected, instead of the
+     *                 reconnect buffer of the connection
+     * @return the streaming connection
+     * @throws NatsStreemingConnectionException if a blocking connect fails
+     */
+    StreamingConnection open(AbstractNatsStreamingConnectionConfig config, String clientId, String name,
+                             boolean spooled) {
+        final ManagedStreamingConnection connection = new ManagedStreamingConnection(name, this, config, clientId,
+                spooled ? 0 : config.getReconnectBufferSize(), subscribeExecutor);
+        if (config.isAsyncConnect()) {
+            connection.start();
+        } else {
+            connection.connectNow();
+        }
+        return connection;
+    }
+
+    /**
+     * @param config                The connection configuration
+     * @param clientId              The client id of the connection
+     * @param connectionLostHandler Notified when the streaming session is lost, may be null
+     * @return the streaming connection
+     * @throws NatsStreemingConnectionException if the connection fails
+     */
+    StreamingConnection connect(AbstractNatsStreamingConnectionConfig config, String clientId,
+                                @Nullable ConnectionLostHandler connectionLostHandler) {
+        Connection natsConnection = null;
+        try {
+            final Optional<io.nats.client.Options> natsOptions = config.toNatsOptions();
+            if (natsOptions.isPresent()) {
+                natsConnection = Nats.connect(natsOptions.get());
+                natsConnections.add(natsConnection);
+            }
+            return new StreamingConnectionFactory(config.toOptions(clientId, natsConnection, connectionLostHandler))
+                    .createConnection();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close(natsConnection);
+            throw new NatsStreemingConnectionException("Interrupted while connecting to the server", e);
+        } catch (Exception e) {
+            close(natsConnection);
+            throw new NatsStreemingConnectionException("Fail to connect to the server", e);
+        }
+    }
+
+    /**
+     * Closes a streaming connection and the nats connection created for it.
+     *
+     * @param connection The streaming connection
+     */
+    void release(StreamingConnection connection) {
+        final Connection natsConnection = connection.getNatsConnection();
+        try {
+            connection.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.debug("Fail to close the streaming connection", e);
+        }
+        if (natsConnections.contains(natsConnection)) {
+            close(natsConnection);
+        }
+    }
+
+    /**
+     * Closes the nats connections created by this connector.
+     */
+    void close() {
+        Connection connection;
+        while ((connection = natsConnections.poll()) != null) {
+            close(connection);
+        }
+    }
+
+    /**
+     * @param connection The nats connection, may be null
+     */
+    private void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        natsConnections.remove(connection);
+        try {
+            connection.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Fail to close the nats connection", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The messages stored for a subject, kept in a ring buffer. Only the most recent messages are kept once the
+ * buffer is full.
+ *
+ * @author alisson
+ */
+final class EmbeddedChannel {
+
+    private final String subject;
+
+    private final StoredMessage[] messages;
+
+    private final List<EmbeddedDelivery> deliveries = new CopyOnWriteArrayList<>();
+
+    private long lastSequence;
+
+    /**
+     * @param subject     The subject
+     * @param maxMessages The maximum number of messages kept
+     */
+    EmbeddedChannel(String subject, int maxMessages) {
+        this.subject = subject;
+        this.messages = new StoredMessage[Math.max(1, maxMessages)];
+    }
+
+    /**
+     * @return the subject
+     */
+    String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Stores a message and wakes up the deliveries of the channel.
+     *
+     * @param data The message body
+     * @return the sequence of the message
+     */
+    long append(byte[] data) {
+        final long sequence;
+        synchronized (this) {
+            sequence = ++lastSequence;
+            messages[index(sequence)] = new StoredMessage(sequence, System.currentTimeMillis() * 1_000_000L, data);
+        }
+        for (EmbeddedDelivery delivery : deliveries) {
+            delivery.signal();
+        }
+        return sequence;
+    }
+
+    /**
+     * @param sequence The sequence
+     * @return the message, or null if it does not exist or was discarded
+     */
+    synchronized StoredMessage get(long sequence) {
+        if (sequence < firstSequence() || sequence > lastSequence) {
+            return null;
+        }
+        return messages[index(sequence)];
+    }
+
+    /**
+     * @return the sequence of the oldest message kept
+     */
+    synchronized long firstSequence() {
+        return Math.max(1L, lastSequence - messages.length + 1);
+    }
+
+    /**
+     * @return the sequence of the last message stored
+     */
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @param timestamp The timestamp in nanoseconds since the epoch
+     * @return the sequence of the first message stored at or after the timestamp
+     */
+    synchronized long sequenceAt(long timestamp) {
+        long low = firstSequence();
+        long high = lastSequence + 1;
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (messages[index(middle)].getTimestamp() < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param delivery The delivery to wake up on new messages
+     */
+    void addDelivery(EmbeddedDelivery delivery) {
+        deliveries.add(delivery);
+    }
+
+    /**
+     * @param delivery The delivery to remove
+     */
+    void removeDelivery(EmbeddedDelivery delivery) {
+        deliveries.remove(delivery);
+    }
+
+    /**
+     * @param sequence The sequence
+     * @return the slot of the sequence in the ring buffer
+     */
+    private int index(long sequence) {
+        return (int) ((sequence - 1) % messages.length);
+    }
+
+    /**
+     * A stored message.
+     */
+    static final class StoredMessage {
+
+        private final long sequence;
+
+        private final long timestamp;
+
+        private final byte[] data;
+
+        /**
+         * @param sequence  The sequence
+         * @param timestamp The timestamp in nanoseconds since the epoch
+         * @param data      The body
+         */
+        StoredMessage(long sequence, long timestamp, byte[] data) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        /**
+         * @return the sequence
+         */
+        long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the timestamp in nanoseconds since the epoch
+         */
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the body
+         */
+        byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import io.nats.streaming.SubscriptionOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The delivery state of a subscription, shared by the members of a queue group and kept for durable subscriptions
+ * while they are closed. Messages are delivered by a dedicated thread that runs while the delivery has members,
+ * honouring the max in flight and redelivering the messages that are not acked within the ack wait.
+ *
+ * @author alisson
+ */
+final class EmbeddedDelivery implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedDelivery.class);
+
+    private final EmbeddedChannel channel;
+
+    private final String name;
+
+    private final int maxInFlight;
+
+    private final long ackWaitNanos;
+
+    private final boolean manualAcks;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * The unacked sequences and their redelivery deadline, in deadline order.
+     */
+    private final Map<Long, Long> unacked = new LinkedHashMap<>();
+
+    private final List<EmbeddedSubscription> members = new ArrayList<>();
+
+    private long nextSequence;
+
+    private int nextMember;
+
+    private Thread thread;
+
+    /**
+     * @param channel       The channel delivered from
+     * @param name          The name of the delivery thread
+     * @param options       The subscription options
+     * @param startSequence The first sequence to deliver
+     */
+    EmbeddedDelivery(EmbeddedChannel channel, String name, SubscriptionOptions options, long startSequence) {
+        this.channel = channel;
+        this.name = name;
+        this.maxInFlight = Math.max(1, options.getMaxInFlight());
+        this.ackWaitNanos = options.getAckWait().toNanos();
+        this.manualAcks = options.isManualAcks();
+        this.nextSequence = startSequence;
+    }
+
+    /**
+     * Adds a member, starting the delivery thread if needed.
+     *
+     * @param member The subscription
+     */
+    void attach(EmbeddedSubscription member) {
+        lock.lock();
+        try {
+            members.add(member);
+            if (thread == null) {
+                thread = new Thread(this, "nats-embedded-" + name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a member, stopping the delivery thread if it was the last one.
+     *
+     * @param member The subscription
+     * @return true if the delivery has no members left
+     */
+    boolean detach(EmbeddedSubscription member) {
+        lock.lock();
+        try {
+            members.remove(member);
+            if (members.isEmpty()) {
+                thread = null;
+                changed.signalAll();
+            }
+            return members.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up the delivery thread after a message was stored.
+     */
+    void signal() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acks a delivered message.
+     *
+     * @param sequence The message sequence
+     */
+    void ack(long sequence) {
+        lock.lock();
+        try {
+            if (unacked.remove(sequence) != null) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        final Thread self = Thread.currentThread();
+        while (true) {
+            final EmbeddedSubscription target;
+            final EmbeddedChannel.StoredMessage message;
+            final boolean redelivered;
+            lock.lock();
+            try {
+                EmbeddedChannel.StoredMessage next = null;
+                boolean again = false;
+                while (next == null) {
+                    if (thread != self) {
+                        return;
+                    }
+                    final long now = System.nanoTime();
+                    final Iterator<Map.Entry<Long, Long>> oldest = unacked.entrySet().iterator();
+                    if (oldest.hasNext()) {
+                        final Map.Entry<Long, Long> entry = oldest.next();
+                        if (entry.getValue() - now <= 0) {
+                            final long sequence = entry.getKey();
+                            oldest.remove();
+                            next = channel.get(sequence);
+                            if (next != null) {
+                                unacked.put(sequence, now + ackWaitNanos);
+                                again = true;
+                            }
+                            continue;
+                        }
+                    }
+                    if (unacked.size() < maxInFlight && nextSequence <= channel.lastSequence()) {
+                        nextSequence = Math.max(nextSequence, channel.firstSequence());
+                        next = channel.get(nextSequence++);
+                        if (next != null && manualAcks) {
+                            unacked.put(next.getSequence(), now + ackWaitNanos);
+                        }
+                        continue;
+                    }
+                    try {
+                        if (unacked.isEmpty()) {
+                            changed.await();
+                        } else {
+                            changed.awaitNanos(unacked.values().iterator().next() - now);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                message = next;
+                redelivered = again;
+                target = members.get(nextMember++ % members.size());
+                if (nextMember < 0) {
+                    nextMember = 0;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                target.getHandler().onMessage(new EmbeddedMessage(this, channel.getSubject(), message, redelivered));
+            } catch (Throwable e) {
+                if (LOG.isErrorEnabled()) {
+                    LOG.error("Error delivering message [{}] of [{}]", message.getSequence(), channel.getSubject(), e);
+                }
+            }
+        }
+    }
+}
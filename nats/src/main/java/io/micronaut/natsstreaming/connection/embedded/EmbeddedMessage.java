@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import io.nats.streaming.Message;
+
+/**
+ * A message delivered by an {@link EmbeddedDelivery}. Acking it notifies the delivery directly.
+ *
+ * @author alisson
+ */
+final class EmbeddedMessage extends Message {
+
+    private final EmbeddedDelivery delivery;
+
+    private final EmbeddedChannel.StoredMessage stored;
+
+    private final String subject;
+
+    private final boolean redelivered;
+
+    /**
+     * @param delivery    The delivery that sent the message
+     * @param subject     The subject
+     * @param stored      The stored message
+     * @param redelivered Whether the message was delivered before
+     */
+    EmbeddedMessage(EmbeddedDelivery delivery, String subject, EmbeddedChannel.StoredMessage stored,
+                    boolean redelivered) {
+        this.delivery = delivery;
+        this.subject = subject;
+        this.stored = stored;
+        this.redelivered = redelivered;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public byte[] getData() {
+        return stored.getData();
+    }
+
+    @Override
+    public long getSequence() {
+        return stored.getSequence();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return stored.getTimestamp();
+    }
+
+    @Override
+    public boolean isRedelivered() {
+        return redelivered;
+    }
+
+    @Override
+    public void ack() {
+        delivery.ack(stored.getSequence());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import io.micronaut.core.util.StringUtils;
+import io.nats.client.Connection;
+import io.nats.client.NUID;
+import io.nats.streaming.AckHandler;
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.Subscription;
+import io.nats.streaming.SubscriptionOptions;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link StreamingConnection} that stores and delivers the messages inside the JVM, without a nats streaming
+ * server. It supports queue groups, durable subscriptions, manual acks with redelivery after the ack wait, max in
+ * flight and the start positions. Messages are not persisted and each subject keeps a bounded number of them.
+ *
+ * @author alisson
+ */
+public class EmbeddedStreamingConnection implements StreamingConnection {
+
+    public static final int DEFAULT_MAX_MESSAGES = 100_000;
+
+    private final int maxMessages;
+
+    private final Map<String, EmbeddedChannel> channels = new ConcurrentHashMap<>();
+
+    private final Map<String, EmbeddedDelivery> sharedDeliveries = new HashMap<>();
+
+    private final Set<EmbeddedSubscription> subscriptions = new LinkedHashSet<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a connection keeping {@link #DEFAULT_MAX_MESSAGES} messages per subject.
+     */
+    public EmbeddedStreamingConnection() {
+        this(DEFAULT_MAX_MESSAGES);
+    }
+
+    /**
+     * @param maxMessages The maximum number of messages kept per subject
+     */
+    public EmbeddedStreamingConnection(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    @Override
+    public void publish(String subject, byte[] data) throws IOException {
+        checkOpen();
+        channel(subject).append(data);
+    }
+
+    @Override
+    public String publish(String subject, byte[] data, AckHandler ah) throws IOException {
+        final String guid = NUID.nextGlobal();
+        publish(subject, data);
+        if (ah != null) {
+            ah.onAck(guid, null);
+        }
+        return guid;
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb) throws IOException {
+        return subscribe(subject, null, cb, null);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, MessageHandler cb, SubscriptionOptions opts) throws IOException {
+        return subscribe(subject, null, cb, opts);
+    }
+
+    @Override
+    public Subscription subscribe(String subject, String queue, MessageHandler cb) throws IOException {
+        return subscribe(subject, queue, cb, null);
+    }
+
+    @Override
+    public synchronized Subscription subscribe(String subject, String queue, MessageHandler cb,
+                                               SubscriptionOptions opts) throws IOException {
+        checkOpen();
+        final SubscriptionOptions options = opts == null ? new SubscriptionOptions.Builder().build() : opts;
+        final EmbeddedChannel channel = channel(subject);
+        final String key = deliveryKey(subject, queue, options.getDurableName());
+        EmbeddedDelivery delivery = key == null ? null : sharedDeliveries.get(key);
+        if (delivery == null) {
+            delivery = new EmbeddedDelivery(channel, key == null ? subject : key, options,
+                    startSequence(channel, options));
+            channel.addDelivery(delivery);
+            if (key != null) {
+                sharedDeliveries.put(key, delivery);
+            }
+        }
+        final EmbeddedSubscription subscription = new EmbeddedSubscription(this, delivery, subject, queue, cb,
+                options);
+        subscriptions.add(subscription);
+        delivery.attach(subscription);
+        return subscription;
+    }
+
+    @Override
+    public Connection getNatsConnection() {
+        return null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (EmbeddedSubscription subscription : new ArrayList<>(subscriptions)) {
+            release(subscription, false);
+        }
+    }
+
+    /**
+     * Removes a subscription. The delivery state of a durable subscription is kept unless it unsubscribes.
+     *
+     * @param subscription The subscription
+     * @param unsubscribe  Whether the durable state must be removed
+     */
+    synchronized void release(EmbeddedSubscription subscription, boolean unsubscribe) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        final EmbeddedDelivery delivery = subscription.getDelivery();
+        final boolean durable = StringUtils.isNotEmpty(subscription.getOptions().getDurableName());
+        if (delivery.detach(subscription) && (unsubscribe || !durable)) {
+            channel(subscription.getSubject()).removeDelivery(delivery);
+            sharedDeliveries.values().remove(delivery);
+        }
+    }
+
+    /**
+     * @param subject The subject
+     * @return the channel of the subject
+     */
+    private EmbeddedChannel channel(String subject) {
+        return channels.computeIfAbsent(subject, name -> new EmbeddedChannel(name, maxMessages));
+    }
+
+    /**
+     * @throws IOException if the connection is closed
+     */
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The embedded connection is closed");
+        }
+    }
+
+    /**
+     * @param subject     The subject
+     * @param queue       The queue group
+     * @param durableName The durable name
+     * @return the key of the delivery state shared by several subscriptions, null if it is not shared
+     */
+    private static String deliveryKey(String subject, String queue, String durableName) {
+        if (StringUtils.isEmpty(queue) && StringUtils.isEmpty(durableName)) {
+            return null;
+        }
+        return subject + '|' + (queue == null ? "" : queue) + '|' + (durableName == null ? "" : durableName);
+    }
+
+    /**
+     * @param channel The channel
+     * @param options The subscription options
+     * @return the first sequence delivered to a new subscription
+     */
+    private static long startSequence(EmbeddedChannel channel, SubscriptionOptions options) {
+        if (options.getStartAt() == null) {
+            return channel.lastSequence() + 1;
+        }
+        switch (options.getStartAt()) {
+            case First:
+                return channel.firstSequence();
+            case LastReceived:
+                return Math.max(1L, channel.lastSequence());
+            case SequenceStart:
+                return options.getStartSequence();
+            case TimeDeltaStart:
+                final Instant startTime = options.getStartTime();
+                return channel.sequenceAt(startTime.getEpochSecond() * 1_000_000_000L + startTime.getNano());
+            default:
+                return channel.lastSequence() + 1;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * @author alisson
+ */
+@ConfigurationProperties(EmbeddedStreamingConnectionConfig.PREFIX)
+public class EmbeddedStreamingConnectionConfig {
+
+    public static final String PREFIX = "nats.embedded";
+
+    public static final String ENABLED = PREFIX + ".enabled";
+
+    private boolean enabled;
+
+    private int maxMessages = EmbeddedStreamingConnection.DEFAULT_MAX_MESSAGES;
+
+    /**
+     *
+     * @return whether the embedded connection replaces the connection to the server
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *
+     * @return the maximum number of messages kept per subject
+     */
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     *
+     * @param maxMessages
+     */
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded;
+
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.Subscription;
+import io.nats.streaming.SubscriptionOptions;
+
+/**
+ * A subscription of an {@link EmbeddedStreamingConnection}.
+ *
+ * @author alisson
+ */
+final class EmbeddedSubscription implements Subscription {
+
+    private final EmbeddedStreamingConnection connection;
+
+    private final EmbeddedDelivery delivery;
+
+    private final String subject;
+
+    private final String queue;
+
+    private final MessageHandler handler;
+
+    private final SubscriptionOptions options;
+
+    /**
+     * @param connection The connection
+     * @param delivery   The delivery state
+     * @param subject    The subject
+     * @param queue      The queue group, may be null
+     * @param handler    The message handler
+     * @param options    The subscription options
+     */
+    EmbeddedSubscription(EmbeddedStreamingConnection connection, EmbeddedDelivery delivery, String subject,
+                         String queue, MessageHandler handler, SubscriptionOptions options) {
+        this.connection = connection;
+        this.delivery = delivery;
+        this.subject = subject;
+        this.queue = queue;
+        this.handler = handler;
+        this.options = options;
+    }
+
+    /**
+     * @return the delivery state
+     */
+    EmbeddedDelivery getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * @return the message handler
+     */
+    MessageHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public String getQueue() {
+        return queue;
+    }
+
+    @Override
+    public SubscriptionOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void unsubscribe() {
+        connection.release(this, true);
+    }
+
+    @Override
+    public void close() {
+        connection.release(this, false);
+    }
+
+    @Override
+    public void close(boolean unsubscribe) {
+        connection.release(this, unsubscribe);
+    }
+}
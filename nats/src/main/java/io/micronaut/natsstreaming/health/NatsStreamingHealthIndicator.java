@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.health;
+
+import io.micronaut.context.BeanContext;
+import io.micronaut.context.BeanRegistration;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.async.publisher.Publishers;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.health.HealthStatus;
+import io.micronaut.management.health.indicator.HealthIndicator;
+import io.micronaut.management.health.indicator.HealthResult;
+import io.micronaut.natsstreaming.connection.ManagedStreamingConnection;
+import io.micronaut.natsstreaming.connection.NatsStreamingConnectionPool;
+import io.nats.client.Connection;
+import io.nats.streaming.StreamingConnection;
+import org.reactivestreams.Publisher;
+
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the nats streaming connections, pooled ones included, down while any of them is not connected to the
+ * server or has a subscription waiting to be created.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(classes = HealthIndicator.class)
+@Requires(property = NatsStreamingHealthIndicator.ENABLED, notEquals = StringUtils.FALSE)
+public class NatsStreamingHealthIndicator implements HealthIndicator {
+
+    /**
+     * The property to disable the health indicator.
+     */
+    public static final String ENABLED = "endpoints.health.nats-streaming.enabled";
+
+    private static final String NAME = "nats-streaming";
+
+    private final BeanContext beanContext;
+
+    /**
+     * Default constructor.
+     *
+     * @param beanContext The context holding the connections
+     */
+    public NatsStreamingHealthIndicator(BeanContext beanContext) {
+        this.beanContext = beanContext;
+    }
+
+    @Override
+    public Publisher<HealthResult> getResult() {
+        final Map<String, Object> details = new LinkedHashMap<>();
+        HealthStatus status = HealthStatus.UP;
+        for (BeanRegistration<StreamingConnection> registration
+                : beanContext.getActiveBeanRegistrations(StreamingConnection.class)) {
+            if (!report(registration.getBean(), String.valueOf(registration.getIdentifier()), details)) {
+                status = HealthStatus.DOWN;
+            }
+        }
+        for (BeanRegistration<NatsStreamingConnectionPool> registration
+                : beanContext.getActiveBeanRegistrations(NatsStreamingConnectionPool.class)) {
+            final List<StreamingConnection> connections = registration.getBean().getConnections();
+            for (int i = 0; i < connections.size(); i++) {
+                if (!report(connections.get(i), "pool-" + i, details)) {
+                    status = HealthStatus.DOWN;
+                }
+            }
+        }
+        return Publishers.just(HealthResult.builder(NAME, status).details(details).build());
+    }
+
+    /**
+     * Adds the state of a connection to the details.
+     *
+     * @param connection  The connection
+     * @param defaultName The name reported for connections without name
+     * @param details     The health details
+     * @return true if connected
+     */
+    private static boolean report(StreamingConnection connection, String defaultName, Map<String, Object> details) {
+        final boolean up = isConnected(connection);
+        final String name = connection instanceof ManagedStreamingConnection
+                ? ((ManagedStreamingConnection) connection).getName() : defaultName;
+        details.put(name, up ? HealthStatus.NAME_UP : HealthStatus.NAME_DOWN);
+        return up;
+    }
+
+    /**
+     * @param connection The connection
+     * @return true if connected with every subscription created, connections without a nats connection run in the
+     * JVM and are always connected
+     */
+    private static boolean isConnected(StreamingConnection connection) {
+        if (connection instanceof ManagedStreamingConnection) {
+            final ManagedStreamingConnection managed = (ManagedStreamingConnection) connection;
+            return managed.isConnected() && managed.getPendingSubscriptions() == 0;
+        }
+        final Connection natsConnection = connection.getNatsConnection();
+        return natsConnection == null || natsConnection.getStatus() == Connection.Status.CONNECTED;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Hands tasks over to a delegate executor while bounding the number of pending tasks.
+ * The caller blocks when the bound is reached, which pushes back on the nats dispatcher thread.
+ *
+ * @author alisson
+ */
+final class BoundedExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final Semaphore permits;
+
+    /**
+     * Default constructor.
+     *
+     * @param delegate The executor running the tasks
+     * @param capacity The maximum number of tasks submitted but not completed
+     */
+    BoundedExecutor(Executor delegate, int capacity) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(Math.max(1, capacity));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free executor slot", e);
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
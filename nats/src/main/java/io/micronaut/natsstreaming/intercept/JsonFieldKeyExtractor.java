@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.nats.streaming.Message;
+
+import java.io.IOException;
+
+/**
+ * Reads a top level field of a JSON body with the streaming parser, without binding the whole payload.
+ *
+ * @author alisson
+ */
+final class JsonFieldKeyExtractor implements NatsMessageKeyExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String field;
+
+    /**
+     * @param field The name of the top level field
+     */
+    JsonFieldKeyExtractor(String field) {
+        this.field = field;
+    }
+
+    @Override
+    public Object extractKey(Message message) {
+        final byte[] data = message.getData();
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if (field.equals(name)) {
+                    return value.isScalarValue() ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new SerializationException("Error reading the field [" + field + "] of the message: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import io.nats.streaming.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Queues the listener acks and sends them from a dedicated thread. The streaming protocol has no multi-message ack,
+ * so this is no batching: every message still sends its own ack, and the flush thread sends whatever is queued as
+ * soon as it wakes up, without waiting for more acks to arrive. The only effect is moving the ack off the listener
+ * threads, which pays off when many listener threads contend on the connection to ack; with a single listener
+ * thread it only adds a thread handoff. Disabled by default, see {@link NatsAckConfig#isEnabled()}. The listener
+ * threads wait for room when the queue is full. The outcome of every ack is reported to its own callback.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(property = NatsAckConfig.ENABLED, value = StringUtils.TRUE)
+public class NatsAckCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsAckCoalescer.class);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000L;
+
+    private final BlockingQueue<PendingAck> queue;
+
+    private final int batchSize;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    /**
+     * Default constructor, starts the flush thread.
+     *
+     * @param config The ack configuration
+     */
+    public NatsAckCoalescer(NatsAckConfig config) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueSize()));
+        this.batchSize = Math.max(1, config.getBatchSize());
+        this.flusher = new Thread(this::run, "nats-ack-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues the ack of a message, acking it on the calling thread if interrupted while waiting for room.
+     *
+     * @param message  The message
+     * @param callback Called once the ack is sent, with null or the ack failure
+     */
+    public void ack(Message message, Consumer<IOException> callback) {
+        final PendingAck pending = new PendingAck(message, callback);
+        if (!running) {
+            pending.send();
+            return;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.send();
+        }
+    }
+
+    /**
+     * @return the number of queued acks
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the flush thread once the queued acks are sent.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(new ArrayList<>());
+    }
+
+    /**
+     * Sends the queued acks until closed, waking up on the first one and sending it with the ones queued meanwhile.
+     */
+    private void run() {
+        final List<PendingAck> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // woken up by close, the loop stops once running is cleared
+            }
+            send(batch);
+        }
+        flush(batch);
+    }
+
+    /**
+     * Sends everything left in the queue.
+     *
+     * @param batch The batch to reuse
+     */
+    private void flush(List<PendingAck> batch) {
+        while (queue.drainTo(batch, batchSize) > 0) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Sends the batch and clears it.
+     *
+     * @param batch The batch
+     */
+    private void send(List<PendingAck> batch) {
+        for (PendingAck pending : batch) {
+            try {
+                pending.send();
+            } catch (RuntimeException e) {
+                LOG.error("An error occurred reporting the ack of a message", e);
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * A queued ack.
+     */
+    private static final class PendingAck {
+
+        private final Message message;
+
+        private final Consumer<IOException> callback;
+
+        /**
+         * @param message  The message
+         * @param callback Called once the ack is sent
+         */
+        private PendingAck(Message message, Consumer<IOException> callback) {
+            this.message = message;
+            this.callback = callback;
+        }
+
+        /**
+         * Acks the message and reports the outcome.
+         */
+        private void send() {
+            IOException failure = null;
+            try {
+                message.ack();
+            } catch (IOException e) {
+                failure = e;
+            }
+            callback.accept(failure);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * The coalescing of the listener acks, configured under {@code nats.acks}. Disabled by default: the acks are sent
+ * by the listener threads. See {@link NatsAckCoalescer} for when enabling it helps.
+ *
+ * @author alisson
+ */
+@ConfigurationProperties(NatsAckConfig.PREFIX)
+public class NatsAckConfig {
+
+    public static final String PREFIX = "nats.acks";
+
+    public static final String ENABLED = PREFIX + ".enabled";
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+
+    private boolean enabled;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /**
+     *
+     * @return true to queue the acks and send them from a dedicated thread, false by default
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *
+     * @return the maximum number of acks the flush thread sends per wake-up
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     *
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     *
+     * @return the maximum number of queued acks, the listeners wait for room once reached
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     *
+     * @param queueSize
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -18,25 +18,50 @@ package io.micronaut.natsstreaming.intercept;
 import io.micronaut.context.BeanContext;
 import io.micronaut.context.processor.ExecutableMethodProcessor;
 import io.micronaut.core.annotation.AnnotationValue;
-import io.micronaut.core.bind.BoundExecutable;
-import io.micronaut.core.bind.DefaultExecutableBinder;
+import io.micronaut.core.convert.ConversionService;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.micronaut.core.util.StringUtils;
 import io.micronaut.inject.BeanDefinition;
 import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.inject.qualifiers.Qualifiers;
 import io.micronaut.messaging.exceptions.MessageListenerException;
+import io.micronaut.natsstreaming.annotation.NatsConnection;
 import io.micronaut.natsstreaming.annotation.NatsStreamingListener;
+import io.micronaut.natsstreaming.annotation.StartPosition;
 import io.micronaut.natsstreaming.annotation.Subject;
 import io.micronaut.natsstreaming.bind.NatsBinderRegistry;
+import io.micronaut.natsstreaming.compression.NatsPayloadCodec;
+import io.micronaut.natsstreaming.connection.ManagedStreamingConnection;
+import io.micronaut.natsstreaming.connection.NatsStreamingConnections;
 import io.micronaut.natsstreaming.exception.NatsStreamingListenerException;
 import io.micronaut.natsstreaming.exception.NatsStreamingListenerExceptionHandler;
+import io.micronaut.natsstreaming.metrics.NatsStreamingListenerMetrics;
+import io.micronaut.natsstreaming.metrics.NatsStreamingMetrics;
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher;
 import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.micronaut.scheduling.TaskScheduler;
 import io.nats.streaming.Message;
 import io.nats.streaming.MessageHandler;
 import io.nats.streaming.StreamingConnection;
 import io.nats.streaming.SubscriptionOptions;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * @author alisson
@@ -46,6 +71,34 @@ public class NatsConsumerAdvice implements ExecutableMethodProcessor<NatsStreami
 
     private static final String ACK_MESSAGE = "enableAck";
 
+    private static final String EXECUTOR = "executor";
+
+    private static final String EXECUTOR_QUEUE_SIZE = "executorQueueSize";
+
+    private static final String BATCH_SIZE = "batchSize";
+
+    private static final String BATCH_TIMEOUT = "batchTimeout";
+
+    private static final String MAX_IN_FLIGHT = "maxInFlight";
+
+    private static final String ACK_WAIT = "ackWait";
+
+    private static final String LANES = "lanes";
+
+    private static final String MAX_RETRIES = "maxRetries";
+
+    private static final String RETRY_DELAY = "retryDelay";
+
+    private static final String MAX_RETRY_DELAY = "maxRetryDelay";
+
+    private static final String DEAD_LETTER_SUBJECT = "deadLetterSubject";
+
+    private static final String DEDUPLICATE = "deduplicate";
+
+    private static final int SERVER_MAX_IN_FLIGHT = 1024;
+
+    private static final Runnable NO_RELEASE = () -> { };
+
     private final BeanContext beanContext;
 
     private final NatsBinderRegistry binderRegistry;
@@ -54,19 +107,35 @@ public class NatsConsumerAdvice implements ExecutableMethodProcessor<NatsStreami
 
     private final NatsStreamingListenerExceptionHandler exceptionHandler;
 
+    private final NatsStreamingMetrics metrics;
+
+    private final NatsPayloadCodec payloadCodec;
+
+    private final NatsAckCoalescer ackCoalescer;
+
+    private final List<ExecutorService> laneExecutors = new CopyOnWriteArrayList<>();
+
     /**
      * Default constructor.
      * @param beanContext      The bean context
      * @param binderRegistry   The registry to bind arguments to the method
      * @param serDesRegistry   The serialization/deserialization registry
      * @param exceptionHandler The exception handler to use if the consumer isn't a handler
+     * @param payloadCodec     The codec decompressing the bodies once per message, before the ordering keys, ids and arguments are read
+     * @param ackCoalescer     The queue of the acks sent in batches, null when acks are sent by the listener threads
+     * @param metrics          The metrics, null when metrics are disabled
      */
     public NatsConsumerAdvice(BeanContext beanContext, NatsBinderRegistry binderRegistry,
-                              NatsMessageSerDesRegistry serDesRegistry, NatsStreamingListenerExceptionHandler exceptionHandler) {
+                              NatsMessageSerDesRegistry serDesRegistry, NatsStreamingListenerExceptionHandler exceptionHandler,
+                              NatsPayloadCodec payloadCodec, @Nullable NatsAckCoalescer ackCoalescer,
+                              @Nullable NatsStreamingMetrics metrics) {
         this.beanContext = beanContext;
         this.binderRegistry = binderRegistry;
         this.serDesRegistry = serDesRegistry;
         this.exceptionHandler = exceptionHandler;
+        this.payloadCodec = payloadCodec;
+        this.ackCoalescer = ackCoalescer;
+        this.metrics = metrics;
     }
 
     @Override
@@ -77,76 +146,751 @@ public class NatsConsumerAdvice implements ExecutableMethodProcessor<NatsStreami
         if (subjectAnn != null) {
             String subject = subjectAnn.getRequiredValue(String.class);
 
-            /*String connectionName =
-                    method.findAnnotation(NatsConnection.class).flatMap(conn -> conn.get("connection", String.class))
-                            .orElse(NatsConnection.DEFAULT_CONNECTION);
+            String connectionName = method.stringValue(NatsConnection.class)
+                    .orElseGet(() -> beanDefinition.stringValue(NatsConnection.class)
+                            .orElse(NatsConnection.DEFAULT_CONNECTION));
 
-            io.micronaut.context.Qualifier<Object> qualifer =
+            /*io.micronaut.context.Qualifier<Object> qualifer =
                     beanDefinition.getAnnotationTypeByStereotype(Qualifier.class)
                             .map(type -> Qualifiers.byAnnotation(beanDefinition, type)).orElse(null);*/
 
             Class<Object> beanType = (Class<Object>) beanDefinition.getBeanType();
 
-            Class<?> returnTypeClass = method.getReturnType().getType();
-            boolean isVoid = returnTypeClass == Void.class || returnTypeClass == void.class;
-
             /*Object bean = beanContext.findBean(beanType, qualifer).orElseThrow(
-                    () -> new MessageListenerException("Could not find the bean to execute the method " + method));
-
-            Connection connection = beanContext.getBean(Connection.class, Qualifiers.byName(connectionName));*/
+                    () -> new MessageListenerException("Could not find the bean to execute the method " + method));*/
 
             Object bean = beanContext.findBean(beanType).orElseThrow(
                     () -> new MessageListenerException("Could not find the bean to execute the method " + method));
 
-            StreamingConnection connection = beanContext.getBean(StreamingConnection.class);
+            final int batchSize = subjectAnn.get(BATCH_SIZE, Integer.class).orElse(0);
+            final Optional<String> durableName = natsStreamingListenerAnnotation.get("durableName", String.class)
+                    .filter(StringUtils::isNotEmpty);
+            final Optional<String> queue = subjectAnn.get("queueGroup", String.class)
+                    .filter(StringUtils::isNotEmpty);
+            final StreamingConnection connection = beanContext.getBean(NatsStreamingConnections.class)
+                    .get(connectionName, subject, durableName.isPresent() && queue.isEmpty());
+            final int lanes = natsStreamingListenerAnnotation.get(LANES, Integer.class).orElse(0);
+            if (lanes > 0 && batchSize > 0) {
+                throw new MessageListenerException("Ordered lanes are not supported by the batch method " + method);
+            }
+            final boolean deduplicate = natsStreamingListenerAnnotation.isTrue(DEDUPLICATE);
+            if (deduplicate && batchSize > 0) {
+                throw new MessageListenerException("Deduplication is not supported by the batch method " + method);
+            }
+            final OrderedLanes orderedLanes = lanes > 0
+                    ? createLanes(natsStreamingListenerAnnotation, subject, lanes, bean) : null;
+            final Executor executor = orderedLanes != null ? null : resolveExecutor(natsStreamingListenerAnnotation, bean);
+            final Object batchLock = batchSize > 0 && executor == null ? new Object() : null;
+            final Executor retryExecutor;
+            if (orderedLanes != null) {
+                retryExecutor = orderedLanes.getExecutor();
+            } else if (batchLock != null) {
+                retryExecutor = command -> {
+                    synchronized (batchLock) {
+                        command.run();
+                    }
+                };
+            } else {
+                retryExecutor = executor;
+            }
 
-            DefaultExecutableBinder<Message> binder = new DefaultExecutableBinder<>();
+            final Listener listener = new Listener(bean,
+                    new NatsListenerInvocationPlan(method, binderRegistry, batchSize > 0),
+                    natsStreamingListenerAnnotation.isTrue(ACK_MESSAGE),
+                    metrics == null ? NatsStreamingListenerMetrics.NOOP
+                            : metrics.listenerMetrics(subject, durableName.orElse(null), queue.orElse(null)),
+                    retryPolicy(natsStreamingListenerAnnotation),
+                    NatsConnection.DEFAULT_CONNECTION.equals(connectionName) ? null : connectionName,
+                    deduplicate ? createDeduplicator(natsStreamingListenerAnnotation, bean) : null,
+                    retryExecutor);
 
+            final MessageHandler messageHandler;
+            if (batchSize > 0) {
+                final Duration batchTimeout = subjectAnn.get(BATCH_TIMEOUT, Duration.class)
+                        .orElseGet(() -> ConversionService.SHARED.convertRequired(Subject.DEFAULT_BATCH_TIMEOUT, Duration.class));
+                final NatsMessageBatcher batcher = new NatsMessageBatcher(batchSize, batchTimeout,
+                        beanContext.getBean(TaskScheduler.class), batchLock == null ? new Object() : batchLock,
+                        batch -> dispatch(executor, listener, null, () -> invokeBatch(listener, batch)));
+                messageHandler = batcher::add;
+            } else if (orderedLanes != null) {
+                final NatsMessageKeyExtractor keyExtractor = findKeyExtractor(natsStreamingListenerAnnotation, bean,
+                        "keyExtractor", "orderingKey").orElseThrow(() -> new MessageListenerException(
+                        "An ordering key or a key extractor is required by the ordered lanes of the listener " + bean));
+                messageHandler = msg -> {
+                    final Object key;
+                    try {
+                        key = keyExtractor.extractKey(msg);
+                    } catch (RuntimeException e) {
+                        unreadable(listener, msg, e, "An error occurred reading the ordering key of the message");
+                        return;
+                    }
+                    orderedLanes.execute(key,
+                            release -> guarded(listener, msg, () -> invoke(listener, msg, 1, release), release).run());
+                };
+            } else {
+                messageHandler = msg -> dispatch(executor, listener, msg, () -> invoke(listener, msg));
+            }
 
-            MessageHandler messageHandler = (msg -> {
-                BoundExecutable boundExecutable = null;
+            final SubscriptionOptions.Builder builder =  new SubscriptionOptions.Builder();
+            builder.durableName(durableName.isEmpty() ? null : durableName.get());
+            if (natsStreamingListenerAnnotation.isTrue(ACK_MESSAGE)) {
+                builder.manualAcks();
+            }
+            applyFlowControl(builder, subject, natsStreamingListenerAnnotation, subjectAnn,
+                    executor != null || lanes > 0 || listener.invocationPlan.isAsync(), batchSize);
+
+            final MessageHandler subscribedHandler = payloadCodec.isEnabled() ? received -> {
+                final Message decoded;
                 try {
-                    boundExecutable = binder.bind(method, binderRegistry, msg);
-                } catch (Throwable e) {
-                    handleException(
-                            new NatsStreamingListenerException("An error occurred binding the message to the method", e, bean,
-                                    msg));
+                    decoded = payloadCodec.decode(received);
+                } catch (RuntimeException e) {
+                    unreadable(listener, received, e, "An error occurred decompressing the message body");
+                    return;
                 }
+                messageHandler.onMessage(decoded);
+            } : messageHandler;
+            try {
+                if (connection instanceof ManagedStreamingConnection) {
+                    ((ManagedStreamingConnection) connection).subscribe(subject, queue.orElse(null),
+                            subscribedHandler, builder.build(), e -> handleException(new NatsStreamingListenerException(
+                                    "An error occurred subscribing to the subject " + subject, e, bean, null)));
+                } else {
+                    connection.subscribe(subject, queue.orElse(null), subscribedHandler, builder.build());
+                }
+            } catch (Exception e) {
+                handleException(
+                        new NatsStreamingListenerException("An error occurred during ack invoque method subscribe", e, bean, null));
+            }
+
+        }
+    }
+
+    /**
+     * Binds the message, invokes the listener method and acks the message, once the method completes when it is
+     * asynchronous.
+     *
+     * @param listener The listener
+     * @param msg      The message
+     */
+    private void invoke(Listener listener, Message msg) {
+        invoke(listener, msg, 1, NO_RELEASE);
+    }
+
+    /**
+     * @param listener The listener
+     * @param msg      The message
+     * @param attempt  The attempt, starting at 1
+     * @param release  Run once the message is done with: processed, dead lettered or its failure handled, after its
+     *                 retries. Releases the ordered lane of the message
+     */
+    private void invoke(Listener listener, Message msg, int attempt, Runnable release) {
+        final NatsStreamingListenerMetrics listenerMetrics = listener.metrics;
+        if (attempt == 1 && msg.isRedelivered()) {
+            listenerMetrics.redelivered();
+        }
+        final long deduplicationKey = listener.deduplicator == null ? NatsMessageDeduplicator.NO_KEY
+                : listener.deduplicator.keyOf(msg);
+        if (listener.deduplicator != null && listener.deduplicator.isDuplicate(deduplicationKey)) {
+            listenerMetrics.duplicated();
+            if (listener.ackEnabled) {
+                ack(listener, msg);
+            }
+            release.run();
+            return;
+        }
+        Object[] arguments = null;
+        final long bindStart = listenerMetrics.start();
+        try {
+            arguments = listener.invocationPlan.bind(msg);
+            listenerMetrics.deserialized(bindStart);
+        } catch (Throwable e) {
+            listenerMetrics.error();
+            if (listener.retryPolicy.getDeadLetterSubject() != null) {
+                exhausted(listener, Collections.singletonList(msg), msg, e, attempt, release);
+                return;
+            }
+            handleException(
+                    new NatsStreamingListenerException("An error occurred binding the message to the method", e,
+                            listener.bean, msg));
+        }
+
+        if (arguments == null) {
+            if (listener.ackEnabled) {
+                ack(listener, msg);
+            }
+            release.run();
+            return;
+        }
+        invokeMethod(listener, arguments, msg, () -> {
+            if (listener.deduplicator != null) {
+                listener.deduplicator.processed(deduplicationKey);
+            }
+            if (listener.ackEnabled) {
+                ack(listener, msg);
+            }
+            release.run();
+        }, !listener.retryPolicy.isEnabled() ? null : error -> failed(listener, Collections.singletonList(msg), msg,
+                error, attempt, () -> invoke(listener, msg, attempt + 1, release), release), release);
+    }
+
+    /**
+     * Binds the batch, invokes the listener method once and acks every message of the batch, once the method
+     * completes when it is asynchronous.
+     *
+     * @param listener The listener
+     * @param batch    The messages
+     */
+    private void invokeBatch(Listener listener, List<Message> batch) {
+        invokeBatch(listener, batch, 1);
+    }
+
+    /**
+     * @param listener The listener
+     * @param batch    The messages
+     * @param attempt  The attempt, starting at 1
+     */
+    private void invokeBatch(Listener listener, List<Message> batch, int attempt) {
+        final NatsStreamingListenerMetrics listenerMetrics = listener.metrics;
+        Object[] arguments = null;
+        final long bindStart = listenerMetrics.start();
+        try {
+            arguments = listener.invocationPlan.bindBatch(batch);
+            listenerMetrics.deserialized(bindStart);
+        } catch (Throwable e) {
+            listenerMetrics.error();
+            if (listener.retryPolicy.getDeadLetterSubject() != null) {
+                exhausted(listener, batch, null, e, attempt, NO_RELEASE);
+                return;
+            }
+            handleException(
+                    new NatsStreamingListenerException("An error occurred binding the batch to the method", e,
+                            listener.bean, null));
+        }
 
-                if (boundExecutable != null) {
-                    boundExecutable.invoke(bean);
+        final Runnable ackBatch = () -> {
+            if (listener.ackEnabled) {
+                for (Message msg : batch) {
+                    ack(listener, msg);
                 }
+            }
+        };
+        if (arguments == null) {
+            ackBatch.run();
+        } else {
+            invokeMethod(listener, arguments, null, ackBatch, !listener.retryPolicy.isEnabled() ? null
+                    : error -> failed(listener, batch, null, error, attempt,
+                            () -> invokeBatch(listener, batch, attempt + 1), NO_RELEASE), NO_RELEASE);
+        }
+    }
 
-                if (natsStreamingListenerAnnotation.isTrue(ACK_MESSAGE)) {
-                    try {
-                        msg.ack();
-                    } catch (IOException e) {
-                        handleException(
-                                new NatsStreamingListenerException("An error occurred during ack message", e, bean, msg));
-                    }
+    /**
+     * Invokes the listener method, recording its duration. The completion of an asynchronous method is awaited
+     * without blocking: the calling thread returns as soon as the method does.
+     *
+     * @param listener   The listener
+     * @param arguments  The bound arguments
+     * @param msg        The message being processed, null for batches
+     * @param onComplete Run once the method completes successfully
+     * @param onFailure  Handles the failures, null to throw them or hand the asynchronous ones to the exception
+     *                   handler
+     * @param release    Run once a failure is thrown or handed to the exception handler
+     */
+    private void invokeMethod(Listener listener, Object[] arguments, @Nullable Message msg, Runnable onComplete,
+                              @Nullable Consumer<Throwable> onFailure, Runnable release) {
+        final long invokeStart = listener.metrics.start();
+        final Object result;
+        try {
+            result = listener.invocationPlan.invoke(listener.bean, arguments);
+        } catch (RuntimeException e) {
+            listener.metrics.error();
+            if (onFailure == null) {
+                release.run();
+                throw e;
+            }
+            onFailure.accept(e);
+            return;
+        }
+        final CompletionStage<?> completion = listener.invocationPlan.completion(result);
+        if (completion == null) {
+            listener.metrics.invoked(invokeStart);
+            onComplete.run();
+            return;
+        }
+        completion.whenComplete((value, error) -> guarded(listener, msg, () -> {
+            if (error != null) {
+                listener.metrics.error();
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (onFailure != null) {
+                    onFailure.accept(cause);
+                } else {
+                    handleException(new NatsStreamingListenerException("The listener method completed exceptionally",
+                            cause, listener.bean, msg));
+                    release.run();
                 }
+            } else {
+                listener.metrics.invoked(invokeStart);
+                onComplete.run();
+            }
+        }, release).run());
+    }
 
-            });
+    /**
+     * Handles a message that cannot be read before its invocation the same way as a binding failure: it is dead
+     * lettered when the listener has a dead letter subject, otherwise its failure is handed to the exception handler
+     * and it is acked.
+     *
+     * @param listener    The listener
+     * @param msg         The message
+     * @param error       The failure
+     * @param description The description of the failure
+     */
+    private void unreadable(Listener listener, Message msg, Throwable error, String description) {
+        listener.metrics.error();
+        if (listener.retryPolicy.getDeadLetterSubject() != null) {
+            exhausted(listener, Collections.singletonList(msg), msg, error, 1, NO_RELEASE);
+            return;
+        }
+        handleException(new NatsStreamingListenerException(description, error, listener.bean, msg));
+        if (listener.ackEnabled) {
+            ack(listener, msg);
+        }
+    }
+
+    /**
+     * Schedules another attempt of a failed invocation, or dead letters its messages once the retries are exhausted.
+     * The scheduler only waits for the delay, the attempt runs where the listener runs: on its executor, or on the
+     * executor of its ordered lanes while the lane of the message is still held, so the next messages of the lane
+     * wait for the retries.
+     *
+     * @param listener The listener
+     * @param messages The messages of the invocation
+     * @param msg      The message being processed, null for batches
+     * @param error    The failure
+     * @param attempt  The failed attempt, starting at 1
+     * @param retry    Invokes the method again
+     * @param release  Run once the messages are done with
+     */
+    private void failed(Listener listener, List<Message> messages, @Nullable Message msg, Throwable error,
+                        int attempt, Runnable retry, Runnable release) {
+        final NatsRetryPolicy retryPolicy = listener.retryPolicy;
+        if (retryPolicy.canRetry(attempt)) {
+            listener.metrics.retried();
+            beanContext.getBean(TaskScheduler.class).schedule(retryPolicy.delay(attempt),
+                    () -> retry(listener, msg, retry, release));
+            return;
+        }
+        exhausted(listener, messages, msg, error, attempt, release);
+    }
+
+    /**
+     * Runs another attempt on the executor of the listener or of its ordered lanes, or on the scheduler thread when
+     * the listener runs on the nats dispatcher thread.
+     *
+     * @param listener The listener
+     * @param msg      The message being processed, null for batches
+     * @param retry    Invokes the method again
+     * @param release  Run once the messages are done with
+     */
+    private void retry(Listener listener, @Nullable Message msg, Runnable retry, Runnable release) {
+        final Runnable attempt = guarded(listener, msg, retry, release);
+        if (listener.retryExecutor == null) {
+            attempt.run();
+            return;
+        }
+        try {
+            listener.retryExecutor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            try {
+                handleException(new NatsStreamingListenerException("The retry of the listener method was rejected", e,
+                        listener.bean, msg));
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Hands the last failure to the exception handler and republishes the messages to the dead letter subject, if
+     * any. Without one the messages are left to the redelivery.
+     *
+     * @param listener The listener
+     * @param messages The messages of the invocation
+     * @param msg      The message being processed, null for batches
+     * @param error    The last failure
+     * @param attempts The number of attempts made
+     * @param release  Run once the messages are dead lettered, or at once without dead letter subject
+     */
+    private void exhausted(Listener listener, List<Message> messages, @Nullable Message msg, Throwable error,
+                           int attempts, Runnable release) {
+        handleException(new NatsStreamingListenerException("The listener method failed after " + attempts
+                + " attempt(s)", error, listener.bean, msg));
+        final String deadLetterSubject = listener.retryPolicy.getDeadLetterSubject();
+        if (deadLetterSubject == null) {
+            release.run();
+            return;
+        }
+        final NatsStreamingPublisher publisher = beanContext.getBean(NatsStreamingPublisher.class);
+        final AtomicInteger pending = new AtomicInteger(messages.size());
+        final Runnable deadLettered = () -> {
+            if (pending.decrementAndGet() == 0) {
+                release.run();
+            }
+        };
+        for (Message message : messages) {
+            deadLetter(listener, publisher, deadLetterSubject, message, error, attempts, deadLettered);
+        }
+    }
 
+    /**
+     * Republishes the message to the dead letter subject, then acks it once the server acked the dead letter.
+     *
+     * @param listener          The listener
+     * @param publisher         The publisher
+     * @param deadLetterSubject The dead letter subject
+     * @param msg               The message
+     * @param error             The last failure
+     * @param attempts          The number of attempts made
+     * @param deadLettered      Run once the dead letter is published or failed
+     */
+    private void deadLetter(Listener listener, NatsStreamingPublisher publisher, String deadLetterSubject,
+                            Message msg, Throwable error, int attempts, Runnable deadLettered) {
+        final byte[] envelope;
+        try {
+            envelope = NatsDeadLetterEnvelope.write(msg, error, attempts, listener.bean);
+        } catch (SerializationException e) {
+            listener.metrics.error();
+            try {
+                handleException(new NatsStreamingListenerException("An error occurred writing the dead letter", e,
+                        listener.bean, msg));
+            } finally {
+                deadLettered.run();
+            }
+            return;
+        }
+        publisher.publishRawAsync(listener.connectionName, deadLetterSubject, envelope).whenComplete((guid, err) -> {
             try {
-                final SubscriptionOptions.Builder builder =  new SubscriptionOptions.Builder();
-                final Optional<String> durableName = natsStreamingListenerAnnotation.get("durableName", String.class);
-                builder.durableName(durableName.isEmpty() ? null : durableName.get());
-                if (natsStreamingListenerAnnotation.isTrue(ACK_MESSAGE)) {
-                    builder.manualAcks();
+                if (err != null) {
+                    listener.metrics.error();
+                    handleException(new NatsStreamingListenerException("An error occurred publishing the dead letter "
+                            + "to [" + deadLetterSubject + "]", err, listener.bean, msg));
+                    return;
                 }
+                listener.metrics.deadLettered();
+                if (listener.ackEnabled) {
+                    ack(listener, msg);
+                }
+            } finally {
+                deadLettered.run();
+            }
+        });
+    }
 
-                Optional<String> queue = subjectAnn.get("queueGroup", String.class);
-                connection.subscribe(subject,
-                        queue.isEmpty() ? null : queue.get(),
-                        messageHandler,
-                        builder.build());
-            } catch (Exception e) {
-                handleException(
-                        new NatsStreamingListenerException("An error occurred during ack invoque method subscribe", e, bean, null));
+    /**
+     * Acks the message, or queues its ack when the acks are coalesced.
+     *
+     * @param listener The listener
+     * @param msg      The message
+     */
+    private void ack(Listener listener, Message msg) {
+        final long ackStart = listener.metrics.start();
+        if (ackCoalescer != null) {
+            ackCoalescer.ack(msg, error -> acked(listener, msg, ackStart, error));
+            return;
+        }
+        IOException failure = null;
+        try {
+            msg.ack();
+        } catch (IOException e) {
+            failure = e;
+        }
+        acked(listener, msg, ackStart, failure);
+    }
+
+    /**
+     * Records the outcome of an ack.
+     *
+     * @param listener The listener
+     * @param msg      The message
+     * @param ackStart The value returned by {@link NatsStreamingListenerMetrics#start()} before the ack
+     * @param error    The ack failure, null if acked
+     */
+    private void acked(Listener listener, Message msg, long ackStart, @Nullable IOException error) {
+        if (error == null) {
+            listener.metrics.acked(ackStart);
+            return;
+        }
+        listener.metrics.error();
+        handleException(
+                new NatsStreamingListenerException("An error occurred during ack message", error, listener.bean, msg));
+    }
+
+    /**
+     * Shuts down the threads created for the ordered lanes.
+     */
+    @PreDestroy
+    public void close() {
+        laneExecutors.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Runs the invocation on the listener executor, or on the calling thread when none is configured: the nats
+     * dispatcher thread, or the scheduler thread for the batches flushed by their timeout. The failures are handed
+     * to the exception handler in both cases, as is a rejection by the executor.
+     *
+     * @param executor   The listener executor, may be null
+     * @param listener   The listener
+     * @param msg        The message being processed, null for batches
+     * @param invocation The invocation
+     */
+    private void dispatch(Executor executor, Listener listener, Message msg, Runnable invocation) {
+        final Runnable guardedInvocation = guarded(listener, msg, invocation);
+        if (executor == null) {
+            guardedInvocation.run();
+            return;
+        }
+        try {
+            executor.execute(guardedInvocation);
+        } catch (RejectedExecutionException e) {
+            handleException(new NatsStreamingListenerException("The invocation of the listener method was rejected",
+                    e, listener.bean, msg));
+        }
+    }
+
+    /**
+     * @param listener   The listener
+     * @param msg        The message being processed, null for batches
+     * @param invocation The invocation
+     * @return the invocation handing its failures to the exception handler
+     */
+    private Runnable guarded(Listener listener, Message msg, Runnable invocation) {
+        return guarded(listener, msg, invocation, NO_RELEASE);
+    }
+
+    /**
+     * @param listener   The listener
+     * @param msg        The message being processed, null for batches
+     * @param invocation The invocation
+     * @param release    Run when the invocation fails, the message is then done with
+     * @return the invocation handing its failures to the exception handler
+     */
+    private Runnable guarded(Listener listener, Message msg, Runnable invocation, Runnable release) {
+        return () -> {
+            try {
+                invocation.run();
+            } catch (Throwable e) {
+                try {
+                    handleException(
+                            new NatsStreamingListenerException("An error occurred invoking the listener method", e,
+                                    listener.bean, msg));
+                } finally {
+                    release.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * Applies the max in flight, ack wait and start position. The values come from the
+     * {@link NatsSubscriptionConfig} of the subject, then the {@link Subject} and the {@link NatsStreamingListener}
+     * annotations. Listeners using an executor or completing asynchronously default their max in flight to the
+     * executor queue size. With manual acks, batch listeners need a max in flight of at least their batch size,
+     * otherwise the server stops before a batch fills up and every batch waits for its timeout: the default is
+     * raised to the batch size and a lower configured value is rejected.
+     *
+     * @param builder            The subscription options builder
+     * @param subject            The subject
+     * @param listenerAnnotation The listener annotation
+     * @param subjectAnnotation  The subject annotation
+     * @param usesExecutor       Whether the listener runs on an executor or completes asynchronously
+     * @param batchSize          The batch size, 0 for single message listeners
+     */
+    private void applyFlowControl(SubscriptionOptions.Builder builder, String subject,
+                                  AnnotationValue<NatsStreamingListener> listenerAnnotation,
+                                  AnnotationValue<Subject> subjectAnnotation, boolean usesExecutor, int batchSize) {
+        final Optional<NatsSubscriptionConfig> config = beanContext.getBeansOfType(NatsSubscriptionConfig.class)
+                .stream()
+                .filter(subscriptionConfig -> subject.equals(subscriptionConfig.getSubject()))
+                .findFirst();
+
+        Optional<Integer> maxInFlight = config.map(NatsSubscriptionConfig::getMaxInFlight);
+        if (maxInFlight.isEmpty()) {
+            maxInFlight = subjectAnnotation.get(MAX_IN_FLIGHT, Integer.class).filter(value -> value >= 0);
+        }
+        if (maxInFlight.isEmpty()) {
+            maxInFlight = listenerAnnotation.get(MAX_IN_FLIGHT, Integer.class).filter(value -> value >= 0);
+        }
+        final boolean batchAcked = batchSize > 0 && listenerAnnotation.isTrue(ACK_MESSAGE);
+        if (batchAcked && maxInFlight.filter(value -> value < batchSize).isPresent()) {
+            throw new MessageListenerException("The max in flight " + maxInFlight.get() + " of [" + subject
+                    + "] is lower than its batch size " + batchSize + ", the batches could never fill up");
+        }
+        if (maxInFlight.isEmpty() && usesExecutor) {
+            maxInFlight = Optional.of(listenerAnnotation.get(EXECUTOR_QUEUE_SIZE, Integer.class)
+                    .orElse(NatsStreamingListener.DEFAULT_EXECUTOR_QUEUE_SIZE));
+            if (batchAcked) {
+                maxInFlight = Optional.of(Math.max(maxInFlight.get(), batchSize));
             }
+        }
+        if (maxInFlight.isEmpty() && batchAcked && batchSize > SERVER_MAX_IN_FLIGHT) {
+            maxInFlight = Optional.of(batchSize);
+        }
+        maxInFlight.ifPresent(builder::maxInFlight);
+
+        Optional<Duration> ackWait = config.map(NatsSubscriptionConfig::getAckWait);
+        if (ackWait.isEmpty()) {
+            ackWait = durationValue(subjectAnnotation, ACK_WAIT);
+        }
+        if (ackWait.isEmpty()) {
+            ackWait = durationValue(listenerAnnotation, ACK_WAIT);
+        }
+        ackWait.ifPresent(builder::ackWait);
+
+        final StartPosition startPosition = config.map(NatsSubscriptionConfig::getStartPosition)
+                .orElseGet(() -> subjectAnnotation.get("startPosition", StartPosition.class)
+                        .orElse(StartPosition.NEW_ONLY));
+        switch (startPosition) {
+            case FIRST:
+                builder.deliverAllAvailable();
+                break;
+            case LAST_RECEIVED:
+                builder.startWithLastReceived();
+                break;
+            case SEQUENCE:
+                builder.startAtSequence(config.map(NatsSubscriptionConfig::getStartSequence)
+                        .orElseGet(() -> subjectAnnotation.get("startSequence", Long.class).orElse(0L)));
+                break;
+            case TIME_DELTA:
+                builder.startAtTimeDelta(config.map(NatsSubscriptionConfig::getStartTimeDelta)
+                        .or(() -> durationValue(subjectAnnotation, "startTimeDelta"))
+                        .orElseThrow(() -> new MessageListenerException(
+                                "A start time delta is required to start the subscription of [" + subject + "]")));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param listenerAnnotation The listener annotation
+     * @return the retries of the listener methods
+     */
+    private static NatsRetryPolicy retryPolicy(AnnotationValue<NatsStreamingListener> listenerAnnotation) {
+        final int maxRetries = listenerAnnotation.get(MAX_RETRIES, Integer.class).orElse(0);
+        final Optional<String> deadLetterSubject = listenerAnnotation.get(DEAD_LETTER_SUBJECT, String.class)
+                .filter(StringUtils::isNotEmpty);
+        if (maxRetries <= 0 && deadLetterSubject.isEmpty()) {
+            return NatsRetryPolicy.NONE;
+        }
+        return new NatsRetryPolicy(maxRetries,
+                durationValue(listenerAnnotation, RETRY_DELAY).orElseGet(() -> ConversionService.SHARED
+                        .convertRequired(NatsStreamingListener.DEFAULT_RETRY_DELAY, Duration.class)),
+                durationValue(listenerAnnotation, MAX_RETRY_DELAY).orElseGet(() -> ConversionService.SHARED
+                        .convertRequired(NatsStreamingListener.DEFAULT_MAX_RETRY_DELAY, Duration.class)),
+                deadLetterSubject.orElse(null));
+    }
+
+    /**
+     * @param annotation The annotation
+     * @param member     The member holding a duration such as {@code 30s}
+     * @return the duration, empty if the member is not set
+     */
+    private static Optional<Duration> durationValue(AnnotationValue<?> annotation, String member) {
+        return annotation.get(member, String.class)
+                .filter(StringUtils::isNotEmpty)
+                .map(value -> ConversionService.SHARED.convertRequired(value, Duration.class));
+    }
 
+    /**
+     * Resolves the executor configured for the listener.
+     *
+     * @param listenerAnnotation The listener annotation
+     * @param bean               The listener bean
+     * @return the bounded executor, or null if the listener runs on the nats dispatcher thread
+     */
+    private Executor resolveExecutor(AnnotationValue<NatsStreamingListener> listenerAnnotation, Object bean) {
+        final Optional<String> executorName = listenerAnnotation.get(EXECUTOR, String.class)
+                .filter(StringUtils::isNotEmpty);
+        if (executorName.isEmpty()) {
+            return null;
         }
+        final ExecutorService executorService = beanContext
+                .findBean(ExecutorService.class, Qualifiers.byName(executorName.get()))
+                .orElseThrow(() -> new MessageListenerException(
+                        "Could not find the executor [" + executorName.get() + "] for the listener " + bean));
+        final int queueSize = listenerAnnotation.get(EXECUTOR_QUEUE_SIZE, Integer.class)
+                .orElse(NatsStreamingListener.DEFAULT_EXECUTOR_QUEUE_SIZE);
+        return new BoundedExecutor(executorService, queueSize);
+    }
+
+    /**
+     * Creates the ordered lanes of a listener, running on the listener executor or on dedicated threads.
+     *
+     * @param listenerAnnotation The listener annotation
+     * @param subject            The subject, used to name the lane threads
+     * @param lanes              The number of lanes
+     * @param bean               The listener bean
+     * @return the lanes
+     */
+    private OrderedLanes createLanes(AnnotationValue<NatsStreamingListener> listenerAnnotation, String subject,
+                                     int lanes, Object bean) {
+        final Optional<String> executorName = listenerAnnotation.get(EXECUTOR, String.class)
+                .filter(StringUtils::isNotEmpty);
+        final ExecutorService executorService;
+        if (executorName.isPresent()) {
+            executorService = beanContext
+                    .findBean(ExecutorService.class, Qualifiers.byName(executorName.get()))
+                    .orElseThrow(() -> new MessageListenerException(
+                            "Could not find the executor [" + executorName.get() + "] for the listener " + bean));
+        } else {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(lanes, runnable -> {
+                Thread thread = new Thread(runnable, "nats-lane-" + subject + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            laneExecutors.add(executorService);
+        }
+        final int queueSize = listenerAnnotation.get(EXECUTOR_QUEUE_SIZE, Integer.class)
+                .orElse(NatsStreamingListener.DEFAULT_EXECUTOR_QUEUE_SIZE);
+        return new OrderedLanes(executorService, lanes, queueSize);
+    }
+
+    /**
+     * Resolves a key extractor of the listener: the bean named by the extractor member, or a reader of the JSON field
+     * named by the field member.
+     *
+     * @param listenerAnnotation The listener annotation
+     * @param bean               The listener bean
+     * @param extractorMember    The annotation member holding the key extractor type
+     * @param fieldMember        The annotation member holding the JSON field name
+     * @return the key extractor, empty if none is configured
+     */
+    private Optional<NatsMessageKeyExtractor> findKeyExtractor(AnnotationValue<NatsStreamingListener> listenerAnnotation,
+                                                               Object bean, String extractorMember, String fieldMember) {
+        final Optional<Class<?>> extractorType = listenerAnnotation.classValue(extractorMember)
+                .filter(type -> type != NatsMessageKeyExtractor.class);
+        if (extractorType.isPresent()) {
+            return Optional.of((NatsMessageKeyExtractor) beanContext.findBean(extractorType.get()).orElseThrow(
+                    () -> new MessageListenerException("Could not find the key extractor [" + extractorType.get().getName()
+                            + "] for the listener " + bean)));
+        }
+        return listenerAnnotation.get(fieldMember, String.class)
+                .filter(StringUtils::isNotEmpty)
+                .<NatsMessageKeyExtractor>map(JsonFieldKeyExtractor::new);
+    }
+
+    /**
+     * @param listenerAnnotation The listener annotation
+     * @param bean               The listener bean
+     * @return the deduplicator of a listener method, keyed by the configured id or the subject and sequence
+     */
+    private NatsMessageDeduplicator createDeduplicator(AnnotationValue<NatsStreamingListener> listenerAnnotation,
+                                                       Object bean) {
+        final NatsDeduplicationConfig config = beanContext.getBean(NatsDeduplicationConfig.class);
+        return new NatsMessageDeduplicator(
+                findKeyExtractor(listenerAnnotation, bean, "deduplicationKeyExtractor", "deduplicationKey").orElse(null),
+                new NatsDeduplicationCache(config.getMaxSize(), config.getTtl()));
     }
 
     /**
@@ -162,4 +906,48 @@ public class NatsConsumerAdvice implements ExecutableMethodProcessor<NatsStreami
         }
     }
 
+    /**
+     * The state shared by every message of a listener method.
+     */
+    private static final class Listener {
+
+        private final Object bean;
+
+        private final NatsListenerInvocationPlan invocationPlan;
+
+        private final boolean ackEnabled;
+
+        private final NatsStreamingListenerMetrics metrics;
+
+        private final NatsRetryPolicy retryPolicy;
+
+        private final String connectionName;
+
+        private final NatsMessageDeduplicator deduplicator;
+
+        private final Executor retryExecutor;
+
+        /**
+         * @param bean           The listener bean
+         * @param invocationPlan The invocation plan of the method
+         * @param ackEnabled     Whether the messages must be acked
+         * @param metrics        The metrics of the method
+         * @param retryPolicy    The retries of the method
+         * @param connectionName The connection name, null for the default connection
+         * @param deduplicator   The deduplicator of the messages, null when not deduplicating
+         * @param retryExecutor  The executor running the retries, null to run them on the scheduler thread
+         */
+        Listener(Object bean, NatsListenerInvocationPlan invocationPlan, boolean ackEnabled,
+                 NatsStreamingListenerMetrics metrics, NatsRetryPolicy retryPolicy, @Nullable String connectionName,
+                 @Nullable NatsMessageDeduplicator deduplicator, @Nullable Executor retryExecutor) {
+            this.bean = bean;
+            this.invocationPlan = invocationPlan;
+            this.ackEnabled = ackEnabled;
+            this.metrics = metrics;
+            this.retryPolicy = retryPolicy;
+            this.connectionName = connectionName;
+            this.deduplicator = deduplicator;
+            this.retryExecutor = retryExecutor;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.nats.streaming.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the JSON envelope republished to the dead letter subject: the origin of the message, the last error and
+ * the original body encoded in base64.
+ *
+ * @author alisson
+ */
+final class NatsDeadLetterEnvelope {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Utility class.
+     */
+    private NatsDeadLetterEnvelope() {
+    }
+
+    /**
+     * @param message  The failed message
+     * @param error    The last error
+     * @param attempts The number of attempts made
+     * @param listener The listener bean
+     * @return the envelope
+     */
+    static byte[] write(Message message, Throwable error, int attempts, Object listener) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(256 + (message.getData() == null ? 0
+                : message.getData().length * 4 / 3));
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("subject", message.getSubject());
+            generator.writeNumberField("sequence", message.getSequence());
+            generator.writeNumberField("timestamp", message.getTimestamp());
+            generator.writeBooleanField("redelivered", message.isRedelivered());
+            generator.writeNumberField("attempts", attempts);
+            generator.writeStringField("listener", listener.getClass().getName());
+            generator.writeStringField("exception", error.getClass().getName());
+            generator.writeStringField("error", error.getMessage());
+            generator.writeFieldName("payload");
+            if (message.getData() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeBinary(message.getData());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new SerializationException("Error writing the dead letter of the message " + message.getSequence()
+                    + ": " + e.getMessage());
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import java.time.Duration;
+
+/**
+ * A bounded set of {@code long} keys expiring after a fixed time to live, without boxing nor per entry allocation.
+ * The keys live in an open addressing table with linear probing, half full at most, and in a ring in insertion
+ * order: as every key lives for the same time, the head of the ring is always the next key to expire, and it is
+ * also the one evicted once the ring is full. The key {@code 0} is reserved for the empty slots.
+ *
+ * @author alisson
+ */
+final class NatsDeduplicationCache {
+
+    private static final int MAX_SIZE = 1 << 29;
+
+    private final long ttlNanos;
+
+    private final long[] keys;
+
+    private final long[] expiries;
+
+    private final int mask;
+
+    private final long[] ringKeys;
+
+    private final long[] ringExpiries;
+
+    private int head;
+
+    private int count;
+
+    /**
+     * @param maxSize The maximum number of keys
+     * @param ttl     The time a key is remembered
+     */
+    NatsDeduplicationCache(int maxSize, Duration ttl) {
+        final int size = Math.min(Math.max(1, maxSize), MAX_SIZE);
+        final int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+        this.ttlNanos = ttl.toNanos();
+        this.keys = new long[capacity];
+        this.expiries = new long[capacity];
+        this.mask = capacity - 1;
+        this.ringKeys = new long[size];
+        this.ringExpiries = new long[size];
+    }
+
+    /**
+     * @param key The key, not 0
+     * @param now The current {@link System#nanoTime()}
+     * @return true if the key was added and did not expire yet
+     */
+    synchronized boolean contains(long key, long now) {
+        for (int i = index(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return expiries[i] - now > 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the key, or renews its expiry, evicting the expired keys and the oldest one when full.
+     *
+     * @param key The key, not 0
+     * @param now The current {@link System#nanoTime()}
+     */
+    synchronized void add(long key, long now) {
+        while (count > 0 && (count == ringKeys.length || ringExpiries[head] - now <= 0)) {
+            remove(ringKeys[head], ringExpiries[head]);
+            head = (head + 1) % ringKeys.length;
+            count--;
+        }
+        final long expiry = now + ttlNanos;
+        int i = index(key);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        expiries[i] = expiry;
+        final int tail = (head + count) % ringKeys.length;
+        ringKeys[tail] = key;
+        ringExpiries[tail] = expiry;
+        count++;
+    }
+
+    /**
+     * @return the number of keys in the ring, expired ones included
+     */
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Removes the key if it was not renewed since the ring entry was added.
+     *
+     * @param key    The key
+     * @param expiry The expiry of the ring entry
+     */
+    private void remove(long key, long expiry) {
+        for (int i = index(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                if (expiries[i] == expiry) {
+                    delete(i);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Empties the slot, shifting back the following keys of the probe sequence so that no lookup stops early.
+     *
+     * @param slot The slot
+     */
+    private void delete(int slot) {
+        int gap = slot;
+        for (int i = (slot + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            final int home = index(keys[i]);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                expiries[gap] = expiries[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        expiries[gap] = 0;
+    }
+
+    /**
+     * @param key The key
+     * @return the home slot of the key
+     */
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * The size and time to live of the processed message ids remembered by every deduplicating listener method,
+ * configured under {@code nats.deduplication}.
+ *
+ * @author alisson
+ */
+@ConfigurationProperties(NatsDeduplicationConfig.PREFIX)
+public class NatsDeduplicationConfig {
+
+    public static final String PREFIX = "nats.deduplication";
+
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private Duration ttl = DEFAULT_TTL;
+
+    /**
+     *
+     * @return the maximum number of ids remembered per listener method, the oldest is forgotten first
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     *
+     * @return how long a processed id is remembered
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     *
+     * @param ttl
+     */
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
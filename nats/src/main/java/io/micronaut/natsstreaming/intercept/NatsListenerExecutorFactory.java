@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.exceptions.ConfigurationException;
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors that can be referenced by {@link NatsStreamingListener#executor()} and are not
+ * provided by micronaut.
+ *
+ * @author alisson
+ */
+@Factory
+public class NatsListenerExecutorFactory {
+
+    /**
+     * Creates an executor starting a new virtual thread per message. The JDK method is looked up reflectively
+     * so the module still runs on older JVMs as long as the executor is not used.
+     *
+     * @return the virtual thread executor
+     */
+    @Singleton
+    @Named(NatsStreamingListener.VIRTUAL_EXECUTOR)
+    @Bean(preDestroy = "shutdown")
+    @Requires(missingProperty = "micronaut.executors." + NatsStreamingListener.VIRTUAL_EXECUTOR)
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new ConfigurationException("The [" + NatsStreamingListener.VIRTUAL_EXECUTOR
+                    + "] executor requires Java 21 or above");
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigurationException("Fail to create the virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.core.async.publisher.Publishers;
+import io.micronaut.core.bind.ArgumentBinder;
+import io.micronaut.core.bind.exceptions.UnsatisfiedArgumentException;
+import io.micronaut.core.convert.ArgumentConversionContext;
+import io.micronaut.core.convert.ConversionContext;
+import io.micronaut.core.type.Argument;
+import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.messaging.exceptions.MessageListenerException;
+import io.micronaut.natsstreaming.bind.NatsBinderRegistry;
+import io.nats.streaming.Message;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The binders and conversion contexts of a listener method, resolved once when the subscription is created.
+ * Binding a message only runs the prepared binders and invokes the method. Batch listeners bind every message of
+ * the batch with the binder prepared for the element type of their single {@link List} argument. Methods returning a
+ * {@link CompletionStage} or a type convertible to a {@link Publisher} complete asynchronously.
+ *
+ * @author alisson
+ */
+final class NatsListenerInvocationPlan {
+
+    private final ExecutableMethod<Object, Object> method;
+
+    private final Argument<Object>[] arguments;
+
+    private final ArgumentConversionContext<Object>[] contexts;
+
+    private final ArgumentBinder<Object, Message>[] binders;
+
+    private final boolean batch;
+
+    private final boolean completionStage;
+
+    private final boolean reactive;
+
+    /**
+     * Default constructor.
+     *
+     * @param method         The listener method
+     * @param binderRegistry The registry to resolve the argument binders
+     * @param batch          Whether the method receives batches of messages
+     */
+    @SuppressWarnings("unchecked")
+    NatsListenerInvocationPlan(ExecutableMethod<?, ?> method, NatsBinderRegistry binderRegistry, boolean batch) {
+        this.method = (ExecutableMethod<Object, Object>) method;
+        this.batch = batch;
+        if (batch) {
+            final Argument<?>[] methodArguments = method.getArguments();
+            if (methodArguments.length != 1 || !List.class.equals(methodArguments[0].getType())) {
+                throw new MessageListenerException("The batch listener method " + method
+                        + " must declare a single List argument");
+            }
+            this.arguments = new Argument[] {
+                    methodArguments[0].getFirstTypeVariable().orElse(Argument.OBJECT_ARGUMENT)
+            };
+        } else {
+            this.arguments = (Argument<Object>[]) method.getArguments();
+        }
+        final Class<?> returnType = method.getReturnType().getType();
+        this.completionStage = CompletionStage.class.isAssignableFrom(returnType);
+        this.reactive = !completionStage && Publishers.isConvertibleToPublisher(returnType);
+        this.contexts = new ArgumentConversionContext[arguments.length];
+        this.binders = new ArgumentBinder[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            contexts[i] = ConversionContext.of(arguments[i]);
+            binders[i] = binderRegistry.prepareArgumentBinder(arguments[i]);
+        }
+    }
+
+    /**
+     * @return the listener method
+     */
+    ExecutableMethod<Object, Object> getMethod() {
+        return method;
+    }
+
+    /**
+     * @return true if the method completes asynchronously
+     */
+    boolean isAsync() {
+        return completionStage || reactive;
+    }
+
+    /**
+     * Binds the message to the method arguments.
+     *
+     * @param message The message
+     * @return the argument values
+     * @throws UnsatisfiedArgumentException if a required argument cannot be bound
+     */
+    Object[] bind(Message message) {
+        final Object[] values = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            final ArgumentBinder.BindingResult<Object> result = binders[i].bind(contexts[i], message);
+            if (result.isPresentAndSatisfied()) {
+                values[i] = result.get();
+            } else if (!arguments[i].isNullable()) {
+                throw new UnsatisfiedArgumentException(arguments[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Binds every message of the batch to an element of the list argument. A message that cannot be bound fails the
+     * whole batch, as a single message fails its invocation.
+     *
+     * @param messages The batch
+     * @return the argument values
+     * @throws UnsatisfiedArgumentException if a message cannot be bound to a non nullable element
+     */
+    Object[] bindBatch(List<Message> messages) {
+        if (!batch) {
+            throw new IllegalStateException("The method " + method + " is not a batch listener");
+        }
+        final List<Object> elements = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            final ArgumentBinder.BindingResult<Object> result = binders[0].bind(contexts[0], message);
+            if (result.isPresentAndSatisfied()) {
+                elements.add(result.get());
+            } else if (arguments[0].isNullable()) {
+                elements.add(null);
+            } else {
+                throw new UnsatisfiedArgumentException(arguments[0]);
+            }
+        }
+        return new Object[] {elements};
+    }
+
+    /**
+     * Invokes the method with previously bound arguments.
+     *
+     * @param bean      The listener bean
+     * @param arguments The values returned by {@link #bind(Message)}
+     * @return the method result
+     */
+    Object invoke(Object bean, Object[] arguments) {
+        return method.invoke(bean, arguments);
+    }
+
+    /**
+     * @param result The value returned by {@link #invoke(Object, Object[])}
+     * @return the completion of an asynchronous method, null if the method already completed
+     */
+    @Nullable
+    CompletionStage<?> completion(@Nullable Object result) {
+        if (result == null || !isAsync()) {
+            return null;
+        }
+        if (completionStage) {
+            return (CompletionStage<?>) result;
+        }
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        Publishers.convertPublisher(result, Publisher.class).subscribe(new CompletionSubscriber(future));
+        return future;
+    }
+
+    /**
+     * Drains a publisher, completing a future when it terminates.
+     */
+    private static final class CompletionSubscriber implements Subscriber<Object> {
+
+        private final CompletableFuture<Object> future;
+
+        /**
+         * @param future The future completed when the publisher terminates
+         */
+        private CompletionSubscriber(CompletableFuture<Object> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Object value) {
+            // the emitted values are not used, only the termination acks the message
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            future.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            future.complete(null);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.scheduling.TaskScheduler;
+import io.nats.streaming.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * Gathers messages into batches that are flushed when the batch is full or its timeout expires. The batches are
+ * handed over under the lock of the batcher, from the thread adding the last message or from the scheduler thread,
+ * so the handler never receives two batches at the same time and receives them in order. The listeners running on
+ * the calling thread share the lock with their retries.
+ *
+ * @author alisson
+ */
+final class NatsMessageBatcher {
+
+    private final int batchSize;
+
+    private final Duration batchTimeout;
+
+    private final TaskScheduler scheduler;
+
+    private final Object lock;
+
+    private final Consumer<List<Message>> batchHandler;
+
+    private List<Message> current;
+
+    private ScheduledFuture<?> timeoutTask;
+
+    /**
+     * Default constructor.
+     *
+     * @param batchSize    The number of messages of a full batch
+     * @param batchTimeout The maximum time a message waits for its batch to fill up
+     * @param scheduler    The scheduler of the batch timeouts
+     * @param lock         The lock held while a batch is filled and handed over
+     * @param batchHandler The handler receiving the batches
+     */
+    NatsMessageBatcher(int batchSize, Duration batchTimeout, TaskScheduler scheduler, Object lock,
+                       Consumer<List<Message>> batchHandler) {
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.scheduler = scheduler;
+        this.lock = lock;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Adds a message to the current batch, flushing it if it is full.
+     *
+     * @param message The message
+     */
+    void add(Message message) {
+        synchronized (lock) {
+            if (current == null) {
+                final List<Message> batch = new ArrayList<>(batchSize);
+                current = batch;
+                timeoutTask = scheduler.schedule(batchTimeout, () -> flushExpired(batch));
+            }
+            current.add(message);
+            if (current.size() >= batchSize) {
+                final List<Message> full = current;
+                current = null;
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+                batchHandler.accept(full);
+            }
+        }
+    }
+
+    /**
+     * Flushes the batch if it is still the one being filled.
+     *
+     * @param batch The batch whose timeout expired
+     */
+    private void flushExpired(List<Message> batch) {
+        synchronized (lock) {
+            if (current != batch) {
+                return;
+            }
+            current = null;
+            timeoutTask = null;
+            batchHandler.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.nats.streaming.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Remembers the messages a listener processed, so that their redeliveries are acked and skipped before their body
+ * is deserialized. The message id is the key returned by the key extractor, or the subject and the sequence of the
+ * message. It is kept as a 64 bits hash in a {@link NatsDeduplicationCache}: two distinct ids only collide with a
+ * negligible probability.
+ *
+ * @author alisson
+ */
+final class NatsMessageDeduplicator {
+
+    /**
+     * The key of the messages without id, never deduplicated.
+     */
+    static final long NO_KEY = 0L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsMessageDeduplicator.class);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final NatsMessageKeyExtractor keyExtractor;
+
+    private final NatsDeduplicationCache cache;
+
+    /**
+     * @param keyExtractor The extractor of the message ids, null to use the subject and sequence, reading the
+     *                     decompressed message
+     * @param cache        The processed ids
+     */
+    NatsMessageDeduplicator(@Nullable NatsMessageKeyExtractor keyExtractor, NatsDeduplicationCache cache) {
+        this.keyExtractor = keyExtractor;
+        this.cache = cache;
+    }
+
+    /**
+     * @param message The message
+     * @return the key of the message id, {@link #NO_KEY} if it has none
+     */
+    long keyOf(Message message) {
+        if (keyExtractor == null) {
+            return nonZero(mix(hash(message.getSubject()) ^ mix(message.getSequence())));
+        }
+        final Object id;
+        try {
+            id = keyExtractor.extractKey(message);
+        } catch (RuntimeException e) {
+            LOG.debug("Fail to read the id of the message {} of [{}], it is not deduplicated", message.getSequence(),
+                    message.getSubject(), e);
+            return NO_KEY;
+        }
+        if (id == null) {
+            return NO_KEY;
+        }
+        if (id instanceof Long || id instanceof Integer) {
+            return nonZero(mix(((Number) id).longValue()));
+        }
+        return nonZero(mix(hash(id.toString())));
+    }
+
+    /**
+     * @param key The key returned by {@link #keyOf(Message)}
+     * @return true if a message with the same id was processed within the time to live
+     */
+    boolean isDuplicate(long key) {
+        return key != NO_KEY && cache.contains(key, System.nanoTime());
+    }
+
+    /**
+     * Remembers a processed message.
+     *
+     * @param key The key returned by {@link #keyOf(Message)}
+     */
+    void processed(long key) {
+        if (key != NO_KEY) {
+            cache.add(key, System.nanoTime());
+        }
+    }
+
+    /**
+     * @param value The value
+     * @return the FNV-1a hash of the UTF-8 bytes of the value
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param value The value
+     * @return the value with its bits spread by the murmur3 finalizer
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @param key The key
+     * @return the key, moved away from {@link #NO_KEY}
+     */
+    private static long nonZero(long key) {
+        return key == NO_KEY ? 1L : key;
+    }
+}
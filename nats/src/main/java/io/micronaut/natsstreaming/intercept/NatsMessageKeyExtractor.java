@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.nats.streaming.Message;
+
+import javax.annotation.Nullable;
+
+/**
+ * Extracts the ordering key of a message for listeners dispatching to ordered lanes. Messages with equal keys are
+ * processed in order, the key must be cheap to compute since it runs on the nats dispatcher thread.
+ *
+ * @author alisson
+ */
+@FunctionalInterface
+public interface NatsMessageKeyExtractor {
+
+    /**
+     * @param message The message
+     * @return the key, null sends the message to the first lane
+     */
+    @Nullable
+    Object extractKey(Message message);
+}
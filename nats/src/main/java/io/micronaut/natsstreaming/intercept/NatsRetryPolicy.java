@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * The retries of a listener method: how many times a failed message is invoked again, the exponential backoff
+ * between the attempts and the subject receiving the messages once the retries are exhausted.
+ *
+ * @author alisson
+ */
+final class NatsRetryPolicy {
+
+    /**
+     * The policy of the listeners without retry nor dead letter subject.
+     */
+    static final NatsRetryPolicy NONE = new NatsRetryPolicy(0, Duration.ZERO, Duration.ZERO, null);
+
+    private static final int MAX_SHIFT = 30;
+
+    private final int maxRetries;
+
+    private final Duration retryDelay;
+
+    private final Duration maxRetryDelay;
+
+    private final String deadLetterSubject;
+
+    /**
+     * @param maxRetries        The number of retries after the first attempt
+     * @param retryDelay        The delay before the first retry, doubled for every following one
+     * @param maxRetryDelay     The maximum delay between two attempts
+     * @param deadLetterSubject The dead letter subject, null to leave the message to the redelivery
+     */
+    NatsRetryPolicy(int maxRetries, Duration retryDelay, Duration maxRetryDelay, @Nullable String deadLetterSubject) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.deadLetterSubject = deadLetterSubject;
+    }
+
+    /**
+     * @return true if the failures are handled by this policy instead of propagating to the dispatcher
+     */
+    boolean isEnabled() {
+        return maxRetries > 0 || deadLetterSubject != null;
+    }
+
+    /**
+     * @param attempt The number of attempts already made, starting at 1
+     * @return true if another attempt is allowed
+     */
+    boolean canRetry(int attempt) {
+        return attempt <= maxRetries;
+    }
+
+    /**
+     * @param attempt The number of attempts already made, starting at 1
+     * @return the delay before the next attempt
+     */
+    Duration delay(int attempt) {
+        final Duration delay = retryDelay.multipliedBy(1L << Math.min(attempt - 1, MAX_SHIFT));
+        return delay.isNegative() || delay.compareTo(maxRetryDelay) > 0 ? maxRetryDelay : delay;
+    }
+
+    /**
+     * @return the dead letter subject, null when not configured
+     */
+    @Nullable
+    String getDeadLetterSubject() {
+        return deadLetterSubject;
+    }
+}
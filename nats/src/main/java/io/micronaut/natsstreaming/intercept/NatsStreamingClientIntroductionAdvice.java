@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.context.processor.ExecutableMethodProcessor;
+import io.micronaut.core.async.publisher.Publishers;
+import io.micronaut.core.type.Argument;
+import io.micronaut.core.type.ReturnType;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.inject.BeanDefinition;
+import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.messaging.annotation.Body;
+import io.micronaut.natsstreaming.annotation.NatsConnection;
+import io.micronaut.natsstreaming.annotation.NatsStreamingClient;
+import io.micronaut.natsstreaming.annotation.Subject;
+import io.micronaut.natsstreaming.exception.NatsStreamingClientException;
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDes;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the {@link io.micronaut.natsstreaming.annotation.NatsStreamingClient} advice annotation.
+ * The subject, payload argument, serdes and return handling of each method are resolved once at startup, so a
+ * misconfigured client fails the startup instead of its first publish, and reused for every publish.
+ *
+ * @author alisson
+ */
+@Singleton
+public class NatsStreamingClientIntroductionAdvice implements MethodInterceptor<Object, Object>,
+        ExecutableMethodProcessor<NatsStreamingClient> {
+
+    private final NatsStreamingPublisher publisher;
+
+    private final NatsMessageSerDesRegistry serDesRegistry;
+
+    private final Map<ExecutableMethod<?, ?>, PublishMethod> publishMethods = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor.
+     *
+     * @param publisher      The publisher sending the messages
+     * @param serDesRegistry The registry to get a serializer
+     */
+    public NatsStreamingClientIntroductionAdvice(NatsStreamingPublisher publisher,
+                                                 NatsMessageSerDesRegistry serDesRegistry) {
+        this.publisher = publisher;
+        this.serDesRegistry = serDesRegistry;
+    }
+
+    @Override
+    public void process(BeanDefinition<?> beanDefinition, ExecutableMethod<?, ?> method) {
+        publishMethods.computeIfAbsent(method, this::resolve);
+    }
+
+    @Override
+    public Object intercept(MethodInvocationContext<Object, Object> context) {
+        final PublishMethod publishMethod = publishMethods.computeIfAbsent(context.getExecutableMethod(),
+                this::resolve);
+        final Object[] values = context.getParameterValues();
+        final String subject = publishMethod.subjectIndex >= 0
+                ? (String) values[publishMethod.subjectIndex] : publishMethod.subject;
+        if (StringUtils.isEmpty(subject)) {
+            throw new NatsStreamingClientException("No subject given to publish the message of " + context);
+        }
+
+        switch (publishMethod.returnKind) {
+            case FUTURE:
+                final CompletableFuture<String> future = publish(publishMethod, subject, values);
+                return publishMethod.returnsGuid ? future : future.thenApply(guid -> null);
+            case REACTIVE:
+                return Publishers.convertPublisher(Publishers.fromCompletableFuture(() -> {
+                    final CompletableFuture<String> published = publish(publishMethod, subject, values);
+                    return publishMethod.returnsGuid ? published : published.thenApply(guid -> null);
+                }), publishMethod.returnType);
+            case GUID:
+                return await(publish(publishMethod, subject, values));
+            default:
+                await(publish(publishMethod, subject, values));
+                return null;
+        }
+    }
+
+    /**
+     * Serializes the payload and publishes it.
+     *
+     * @param publishMethod The resolved method
+     * @param subject       The subject
+     * @param values        The method parameter values
+     * @return the future completed with the message guid
+     */
+    private CompletableFuture<String> publish(PublishMethod publishMethod, String subject, Object[] values) {
+        final Object payload = publishMethod.bodyIndex >= 0 ? values[publishMethod.bodyIndex] : null;
+        if (publishMethod.serDes == null) {
+            return publisher.publishAsync(publishMethod.connectionName, subject, payload);
+        }
+        final byte[] data;
+        try {
+            data = publishMethod.serDes.serialize(payload);
+        } catch (RuntimeException e) {
+            final CompletableFuture<String> result = new CompletableFuture<>();
+            result.completeExceptionally(new NatsStreamingClientException("Faill to send message", e));
+            return result;
+        }
+        return publisher.publishRawAsync(publishMethod.connectionName, subject, data);
+    }
+
+    /**
+     * Waits for the server ack of a blocking method.
+     *
+     * @param future The publish future
+     * @return the message guid
+     */
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NatsStreamingClientException) {
+                throw (NatsStreamingClientException) e.getCause();
+            }
+            throw new NatsStreamingClientException("Faill to send message", e.getCause());
+        }
+    }
+
+    /**
+     * Resolves how the method publishes its messages.
+     *
+     * @param method The client method
+     * @return the resolved method
+     */
+    private PublishMethod resolve(ExecutableMethod<?, ?> method) {
+        final Argument<?>[] arguments = method.getArguments();
+        int subjectIndex = -1;
+        int bodyIndex = -1;
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].getAnnotationMetadata().hasAnnotation(Subject.class)) {
+                subjectIndex = i;
+            } else if (arguments[i].getAnnotationMetadata().hasAnnotation(Body.class)) {
+                bodyIndex = i;
+            }
+        }
+        if (bodyIndex < 0) {
+            for (int i = 0; i < arguments.length; i++) {
+                if (i != subjectIndex) {
+                    if (bodyIndex >= 0) {
+                        throw new NatsStreamingClientException("The client method " + method
+                                + " must annotate its payload argument with @Body");
+                    }
+                    bodyIndex = i;
+                }
+            }
+        }
+        final String subject = method.stringValue(Subject.class).orElse(null);
+        if (subjectIndex < 0 && StringUtils.isEmpty(subject)) {
+            throw new NatsStreamingClientException("The client method " + method + " must declare a @Subject");
+        }
+
+        NatsMessageSerDes<Object> serDes = null;
+        if (bodyIndex >= 0 && arguments[bodyIndex].getType() != Object.class) {
+            final Argument<Object> bodyType = (Argument<Object>) arguments[bodyIndex];
+            serDes = serDesRegistry.findSerdes(bodyType).orElseThrow(() -> new NatsStreamingClientException(
+                    "No serdes found to serialize the type [" + bodyType.getName() + "]"));
+        }
+
+        final ReturnType<?> returnType = method.getReturnType();
+        final Class<?> returnClass = returnType.getType();
+        final ReturnKind returnKind;
+        boolean returnsGuid = false;
+        if (returnClass == void.class || returnClass == Void.class) {
+            returnKind = ReturnKind.NONE;
+        } else if (returnClass == String.class) {
+            returnKind = ReturnKind.GUID;
+        } else if (CompletionStage.class.isAssignableFrom(returnClass)) {
+            returnKind = ReturnKind.FUTURE;
+            returnsGuid = returnType.getFirstTypeVariable()
+                    .map(type -> type.getType() == String.class).orElse(false);
+        } else if (Publishers.isConvertibleToPublisher(returnClass)) {
+            returnKind = ReturnKind.REACTIVE;
+            returnsGuid = returnType.getFirstTypeVariable()
+                    .map(type -> type.getType() == String.class).orElse(false);
+        } else {
+            throw new NatsStreamingClientException("Unsupported return type [" + returnClass.getName()
+                    + "] of the client method " + method);
+        }
+        final String connectionName = method.stringValue(NatsConnection.class).orElse(null);
+        return new PublishMethod(connectionName, subject, subjectIndex, bodyIndex, serDes, returnKind, returnClass,
+                returnsGuid);
+    }
+
+    /**
+     * How a method returns once the message is published.
+     */
+    private enum ReturnKind {
+        NONE, GUID, FUTURE, REACTIVE
+    }
+
+    /**
+     * The publish settings of a client method.
+     */
+    private static final class PublishMethod {
+
+        private final String connectionName;
+
+        private final String subject;
+
+        private final int subjectIndex;
+
+        private final int bodyIndex;
+
+        private final NatsMessageSerDes<Object> serDes;
+
+        private final ReturnKind returnKind;
+
+        private final Class<?> returnType;
+
+        private final boolean returnsGuid;
+
+        /**
+         * @param connectionName The connection selected with {@link NatsConnection}, null for the default one
+         * @param subject        The subject declared on the method
+         * @param subjectIndex   The index of the subject argument, -1 if none
+         * @param bodyIndex      The index of the payload argument, -1 if none
+         * @param serDes         The serdes of the payload, null to resolve it from the runtime type
+         * @param returnKind     The return handling
+         * @param returnType     The return type
+         * @param returnsGuid    Whether the returned future or publisher yields the message guid, otherwise it
+         *                       completes empty
+         */
+        PublishMethod(String connectionName, String subject, int subjectIndex, int bodyIndex,
+                      NatsMessageSerDes<Object> serDes, ReturnKind returnKind, Class<?> returnType,
+                      boolean returnsGuid) {
+            this.connectionName = connectionName;
+            this.subject = subject;
+            this.subjectIndex = subjectIndex;
+            this.bodyIndex = bodyIndex;
+            this.serDes = serDes;
+            this.returnKind = returnKind;
+            this.returnType = returnType;
+            this.returnsGuid = returnsGuid;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+import io.micronaut.natsstreaming.annotation.StartPosition;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Subscription settings of a subject, overriding the values of the listener annotations. Subjects usually contain
+ * dots, so each entry is named freely and declares its {@code subject}:
+ *
+ * <pre>
+ * nats.subscriptions.orders.subject=orders.created
+ * nats.subscriptions.orders.max-in-flight=64
+ * </pre>
+ *
+ * @author alisson
+ */
+@EachProperty("nats.subscriptions")
+public class NatsSubscriptionConfig {
+
+    private final String name;
+
+    private String subject;
+
+    private Integer maxInFlight;
+
+    private Duration ackWait;
+
+    private StartPosition startPosition;
+
+    private Long startSequence;
+
+    private Duration startTimeDelta;
+
+    /**
+     * @param name The name of the entry
+     */
+    public NatsSubscriptionConfig(@Parameter String name) {
+        this.name = name;
+    }
+
+    /**
+     *
+     * @return the name of the entry
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     *
+     * @return the subject the settings apply to
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     *
+     * @param subject
+     */
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    /**
+     *
+     * @return the max in flight
+     */
+    @Nullable
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     *
+     * @param maxInFlight
+     */
+    public void setMaxInFlight(@Nullable Integer maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     *
+     * @return the ack wait
+     */
+    @Nullable
+    public Duration getAckWait() {
+        return ackWait;
+    }
+
+    /**
+     *
+     * @param ackWait
+     */
+    public void setAckWait(@Nullable Duration ackWait) {
+        this.ackWait = ackWait;
+    }
+
+    /**
+     *
+     * @return the start position
+     */
+    @Nullable
+    public StartPosition getStartPosition() {
+        return startPosition;
+    }
+
+    /**
+     *
+     * @param startPosition
+     */
+    public void setStartPosition(@Nullable StartPosition startPosition) {
+        this.startPosition = startPosition;
+    }
+
+    /**
+     *
+     * @return the start sequence
+     */
+    @Nullable
+    public Long getStartSequence() {
+        return startSequence;
+    }
+
+    /**
+     *
+     * @param startSequence
+     */
+    public void setStartSequence(@Nullable Long startSequence) {
+        this.startSequence = startSequence;
+    }
+
+    /**
+     *
+     * @return the start time delta
+     */
+    @Nullable
+    public Duration getStartTimeDelta() {
+        return startTimeDelta;
+    }
+
+    /**
+     *
+     * @param startTimeDelta
+     */
+    public void setStartTimeDelta(@Nullable Duration startTimeDelta) {
+        this.startTimeDelta = startTimeDelta;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks in serial lanes chosen by key hash, on top of a shared executor. Tasks with the same key run in
+ * submission order, tasks of different lanes run in parallel. Each lane bounds its pending tasks, blocking the
+ * caller once the bound is reached. A task may complete asynchronously: its lane is held, without holding a thread,
+ * until the task runs the release it was given.
+ *
+ * @author alisson
+ */
+final class OrderedLanes {
+
+    /**
+     * The number of tasks a lane runs before giving its thread back to the executor.
+     */
+    private static final int LANE_BATCH = 64;
+
+    private final Executor executor;
+
+    private final Lane[] lanes;
+
+    /**
+     * @param executor  The executor running the lanes
+     * @param laneCount The number of lanes
+     * @param queueSize The maximum number of pending tasks per lane
+     */
+    OrderedLanes(Executor executor, int laneCount, int queueSize) {
+        this.executor = executor;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(executor, queueSize);
+        }
+    }
+
+    /**
+     * @return the executor running the lanes
+     */
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param key  The ordering key, may be null
+     * @param task The task, completed when it returns
+     */
+    void execute(Object key, Runnable task) {
+        execute(key, release -> {
+            try {
+                task.run();
+            } finally {
+                release.run();
+            }
+        });
+    }
+
+    /**
+     * @param key  The ordering key, may be null
+     * @param task The task, given the release to run once it completes. The next tasks of the lane wait for it, a
+     *             task throwing an exception is released
+     */
+    void execute(Object key, Consumer<Runnable> task) {
+        final int hash = key == null ? 0 : key.hashCode();
+        lanes[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes.length].execute(task);
+    }
+
+    /**
+     * A serial lane.
+     */
+    private static final class Lane implements Runnable {
+
+        private final Executor executor;
+
+        private final Semaphore permits;
+
+        private final Queue<Consumer<Runnable>> tasks = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * @param executor  The executor running the lane
+         * @param queueSize The maximum number of pending tasks
+         */
+        Lane(Executor executor, int queueSize) {
+            this.executor = executor;
+            this.permits = new Semaphore(Math.max(1, queueSize));
+        }
+
+        /**
+         * @param task The task to append to the lane
+         */
+        void execute(Consumer<Runnable> task) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a free lane slot", e);
+            }
+            tasks.add(task);
+            schedule();
+        }
+
+        @Override
+        public void run() {
+            boolean held = false;
+            try {
+                Consumer<Runnable> task;
+                for (int i = 0; i < LANE_BATCH && (task = tasks.poll()) != null; i++) {
+                    final Release release = new Release();
+                    boolean returned = false;
+                    try {
+                        task.accept(release);
+                        returned = true;
+                    } finally {
+                        if (!returned) {
+                            release.run();
+                        }
+                        held = release.hold();
+                        if (!held) {
+                            permits.release();
+                        }
+                    }
+                    if (held) {
+                        return;
+                    }
+                }
+            } finally {
+                if (!held) {
+                    scheduled.set(false);
+                    if (!tasks.isEmpty()) {
+                        schedule();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Submits the lane to the executor unless it is already running.
+         */
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                resume();
+            }
+        }
+
+        /**
+         * Submits the lane to the executor, once scheduled.
+         */
+        private void resume() {
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Releases the lane after a task, from any thread. The lane stops while the task is held and resumes on the
+         * executor once released.
+         */
+        private final class Release implements Runnable {
+
+            private static final int RUNNING = 0;
+
+            private static final int RELEASED = 1;
+
+            private static final int HELD = 2;
+
+            private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+            @Override
+            public void run() {
+                if (!state.compareAndSet(RUNNING, RELEASED) && state.compareAndSet(HELD, RELEASED)) {
+                    permits.release();
+                    resume();
+                }
+            }
+
+            /**
+             * @return true if the task is still running, the lane then waits for the release
+             */
+            private boolean hold() {
+                return state.compareAndSet(RUNNING, HELD);
+            }
+        }
+    }
+}
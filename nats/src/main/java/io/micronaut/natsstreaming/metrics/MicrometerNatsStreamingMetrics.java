@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records the nats streaming metrics in the micrometer {@link MeterRegistry}.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(classes = MeterRegistry.class)
+@Requires(beans = MeterRegistry.class)
+@Requires(property = MicrometerNatsStreamingMetrics.ENABLED, notEquals = StringUtils.FALSE)
+public class MicrometerNatsStreamingMetrics implements NatsStreamingMetrics {
+
+    /**
+     * The property to disable the nats streaming metrics.
+     */
+    public static final String ENABLED = "micronaut.metrics.binders.nats-streaming.enabled";
+
+    private static final String PREFIX = "nats.streaming.";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Default constructor.
+     *
+     * @param meterRegistry The registry of the meters
+     */
+    public MicrometerNatsStreamingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public NatsStreamingListenerMetrics listenerMetrics(String subject, @Nullable String durableName,
+                                                        @Nullable String queueGroup) {
+        final Tags tags = Tags.of(
+                "subject", subject,
+                "durable", StringUtils.isEmpty(durableName) ? NONE : durableName,
+                "queue", StringUtils.isEmpty(queueGroup) ? NONE : queueGroup);
+        return new ListenerMetrics(
+                meterRegistry.timer(PREFIX + "consumer.deserialize", tags),
+                meterRegistry.timer(PREFIX + "consumer.invoke", tags),
+                meterRegistry.timer(PREFIX + "consumer.ack", tags),
+                meterRegistry.counter(PREFIX + "consumer.errors", tags),
+                meterRegistry.counter(PREFIX + "consumer.redeliveries", tags),
+                meterRegistry.counter(PREFIX + "consumer.retries", tags),
+                meterRegistry.counter(PREFIX + "consumer.dead-letters", tags),
+                meterRegistry.counter(PREFIX + "consumer.duplicates", tags));
+    }
+
+    @Override
+    public NatsStreamingPublisherMetrics publisherMetrics(Supplier<Number> inFlight) {
+        Gauge.builder(PREFIX + "publisher.in-flight", inFlight).register(meterRegistry);
+        return new PublisherMetrics(
+                meterRegistry.timer(PREFIX + "publisher.ack"),
+                meterRegistry.counter(PREFIX + "publisher.errors"));
+    }
+
+    @Override
+    public NatsStreamingSpoolMetrics spoolMetrics(Supplier<Number> depth) {
+        Gauge.builder(PREFIX + "publisher.spool.depth", depth).register(meterRegistry);
+        return new SpoolMetrics(
+                meterRegistry.counter(PREFIX + "publisher.spool.appended"),
+                meterRegistry.counter(PREFIX + "publisher.spool.drained"));
+    }
+
+    /**
+     * Micrometer backed listener metrics.
+     */
+    private static final class ListenerMetrics implements NatsStreamingListenerMetrics {
+
+        private final Timer deserialize;
+
+        private final Timer invoke;
+
+        private final Timer ack;
+
+        private final Counter errors;
+
+        private final Counter redeliveries;
+
+        private final Counter retries;
+
+        private final Counter deadLetters;
+
+        private final Counter duplicates;
+
+        /**
+         * @param deserialize  The binding timer
+         * @param invoke       The invocation timer
+         * @param ack          The ack timer
+         * @param errors       The error counter
+         * @param redeliveries The redelivery counter
+         * @param retries      The retry counter
+         * @param deadLetters  The dead letter counter
+         * @param duplicates   The duplicate counter
+         */
+        ListenerMetrics(Timer deserialize, Timer invoke, Timer ack, Counter errors, Counter redeliveries,
+                        Counter retries, Counter deadLetters, Counter duplicates) {
+            this.deserialize = deserialize;
+            this.invoke = invoke;
+            this.ack = ack;
+            this.errors = errors;
+            this.redeliveries = redeliveries;
+            this.retries = retries;
+            this.deadLetters = deadLetters;
+            this.duplicates = duplicates;
+        }
+
+        @Override
+        public long start() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void deserialized(long start) {
+            deserialize.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void invoked(long start) {
+            invoke.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void acked(long start) {
+            ack.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void error() {
+            errors.increment();
+        }
+
+        @Override
+        public void redelivered() {
+            redeliveries.increment();
+        }
+
+        @Override
+        public void retried() {
+            retries.increment();
+        }
+
+        @Override
+        public void deadLettered() {
+            deadLetters.increment();
+        }
+
+        @Override
+        public void duplicated() {
+            duplicates.increment();
+        }
+    }
+
+    /**
+     * Micrometer backed publisher metrics.
+     */
+    private static final class PublisherMetrics implements NatsStreamingPublisherMetrics {
+
+        private final Timer ack;
+
+        private final Counter errors;
+
+        /**
+         * @param ack    The server ack timer
+         * @param errors The error counter
+         */
+        PublisherMetrics(Timer ack, Counter errors) {
+            this.ack = ack;
+            this.errors = errors;
+        }
+
+        @Override
+        public long start() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void acked(long start) {
+            ack.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void error() {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Micrometer backed spool metrics, the drain rate is the rate of the drained counter.
+     */
+    private static final class SpoolMetrics implements NatsStreamingSpoolMetrics {
+
+        private final Counter appended;
+
+        private final Counter drained;
+
+        /**
+         * @param appended The counter of spooled messages
+         * @param drained  The counter of drained messages
+         */
+        SpoolMetrics(Counter appended, Counter drained) {
+            this.appended = appended;
+            this.drained = drained;
+        }
+
+        @Override
+        public void spooled() {
+            appended.increment();
+        }
+
+        @Override
+        public void drained(int count) {
+            drained.increment(count);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.metrics;
+
+/**
+ * Records the processing of the messages of a single listener method. The {@link #NOOP} instance is used when no
+ * metrics are collected and does not read the clock.
+ *
+ * @author alisson
+ */
+public interface NatsStreamingListenerMetrics {
+
+    /**
+     * Metrics that record nothing.
+     */
+    NatsStreamingListenerMetrics NOOP = new NatsStreamingListenerMetrics() { };
+
+    /**
+     * @return the start time of a measured step
+     */
+    default long start() {
+        return 0L;
+    }
+
+    /**
+     * Records the time spent binding the message to the method arguments.
+     *
+     * @param start The value returned by {@link #start()}
+     */
+    default void deserialized(long start) {
+    }
+
+    /**
+     * Records the time spent in the listener method.
+     *
+     * @param start The value returned by {@link #start()}
+     */
+    default void invoked(long start) {
+    }
+
+    /**
+     * Records the time spent acking the message.
+     *
+     * @param start The value returned by {@link #start()}
+     */
+    default void acked(long start) {
+    }
+
+    /**
+     * Records a failure binding, invoking or acking a message.
+     */
+    default void error() {
+    }
+
+    /**
+     * Records a message delivered again by the server.
+     */
+    default void redelivered() {
+    }
+
+    /**
+     * Records a failed message scheduled for another attempt.
+     */
+    default void retried() {
+    }
+
+    /**
+     * Records a message republished to the dead letter subject.
+     */
+    default void deadLettered() {
+    }
+
+    /**
+     * Records a message skipped as already processed.
+     */
+    default void duplicated() {
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.metrics;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * Creates the metrics of the listeners and publishers. Only present when a metrics registry is available, the
+ * components fall back to the no-op metrics otherwise.
+ *
+ * @author alisson
+ */
+public interface NatsStreamingMetrics {
+
+    /**
+     * @param subject     The subject listened to
+     * @param durableName The durable name, if any
+     * @param queueGroup  The queue group, if any
+     * @return the metrics of a listener method
+     */
+    NatsStreamingListenerMetrics listenerMetrics(String subject, @Nullable String durableName,
+                                                 @Nullable String queueGroup);
+
+    /**
+     * @param inFlight Supplies the number of publishes waiting for the server ack
+     * @return the metrics of a publisher
+     */
+    NatsStreamingPublisherMetrics publisherMetrics(Supplier<Number> inFlight);
+
+    /**
+     * @param depth Supplies the number of messages waiting in the spool
+     * @return the metrics of the publish spool
+     */
+    default NatsStreamingSpoolMetrics spoolMetrics(Supplier<Number> depth) {
+        return NatsStreamingSpoolMetrics.NOOP;
+    }
+}
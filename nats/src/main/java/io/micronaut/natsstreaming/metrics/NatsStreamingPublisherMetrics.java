@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.metrics;
+
+/**
+ * Records the messages sent by a publisher. The {@link #NOOP} instance is used when no metrics are collected and
+ * does not read the clock.
+ *
+ * @author alisson
+ */
+public interface NatsStreamingPublisherMetrics {
+
+    /**
+     * Metrics that record nothing.
+     */
+    NatsStreamingPublisherMetrics NOOP = new NatsStreamingPublisherMetrics() { };
+
+    /**
+     * @return the start time of a publish
+     */
+    default long start() {
+        return 0L;
+    }
+
+    /**
+     * Records the time until the server acked the message.
+     *
+     * @param start The value returned by {@link #start()}
+     */
+    default void acked(long start) {
+    }
+
+    /**
+     * Records a publish that failed or was not acked by the server.
+     */
+    default void error() {
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.metrics;
+
+/**
+ * Records the messages written to and drained from the publish spool.
+ *
+ * @author alisson
+ */
+public interface NatsStreamingSpoolMetrics {
+
+    /**
+     * Metrics that record nothing.
+     */
+    NatsStreamingSpoolMetrics NOOP = new NatsStreamingSpoolMetrics() { };
+
+    /**
+     * Records a message appended to the spool.
+     */
+    default void spooled() {
+    }
+
+    /**
+     * Records messages published from the spool and acked by the server.
+     *
+     * @param count The number of messages
+     */
+    default void drained(int count) {
+    }
+}
@@ -15,52 +15,372 @@
  */
 package io.micronaut.natsstreaming.publisher;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.natsstreaming.annotation.NatsConnection;
+import io.micronaut.natsstreaming.compression.NatsPayloadCodec;
+import io.micronaut.natsstreaming.connection.NatsStreamingConnections;
 import io.micronaut.natsstreaming.exception.NatsStreamingClientException;
+import io.micronaut.natsstreaming.metrics.NatsStreamingMetrics;
+import io.micronaut.natsstreaming.metrics.NatsStreamingPublisherMetrics;
+import io.micronaut.natsstreaming.metrics.NatsStreamingSpoolMetrics;
+import io.micronaut.natsstreaming.publisher.spool.NatsPublishSpool;
+import io.micronaut.natsstreaming.publisher.spool.NatsSpooledMessage;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDes;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.TaskScheduler;
 import io.nats.streaming.AckHandler;
-import io.nats.streaming.StreamingConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.inject.Inject;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Publishes messages within a bounded window of messages waiting for the server ack. When the
+ * {@link NatsPublishSpool} is enabled, publishes that fail or time out waiting for the window are appended to the
+ * spool instead of failing, and every publish goes through the spool while it is not empty so the order is kept.
+ * The spool is drained in the background with the same window; messages are published at least once, a drain
+ * interrupted before the server acks may publish them again. The spool then owns the undelivered messages of the
+ * default connection, which does not buffer publishes while disconnected, and the failed acks are spooled on the IO
+ * executor rather than on the nats callback thread.
+ *
  * @author alisson
  */
 @Singleton
 public class NatsStreamingPublisher {
 
-    @Inject
-    private StreamingConnection connection;
+    private static final Logger LOG = LoggerFactory.getLogger(NatsStreamingPublisher.class);
+
+    private final NatsStreamingConnections connections;
+
+    private final NatsMessageSerDesRegistry serDesRegistry;
+
+    private final NatsStreamingPublisherConfig config;
+
+    private final Semaphore inFlight;
+
+    private final NatsStreamingPublisherMetrics metrics;
+
+    private final NatsPayloadCodec payloadCodec;
+
+    private final NatsPublishSpool spool;
+
+    private final NatsStreamingSpoolMetrics spoolMetrics;
+
+    private final TaskScheduler taskScheduler;
+
+    private final ExecutorService ioExecutor;
+
+    /**
+     * Default constructor.
+     *
+     * @param connections    The connections to publish to
+     * @param serDesRegistry The registry to get a serializer
+     * @param config         The publisher configuration
+     * @param payloadCodec   The codec compressing the bodies
+     * @param spool          The spool of the failed publishes, null when disabled
+     * @param taskScheduler  The scheduler draining the spool
+     * @param ioExecutor     The executor spooling the publishes the server failed to ack
+     * @param metrics        The metrics, null when metrics are disabled
+     */
+    public NatsStreamingPublisher(NatsStreamingConnections connections, NatsMessageSerDesRegistry serDesRegistry,
+                                  NatsStreamingPublisherConfig config, NatsPayloadCodec payloadCodec,
+                                  @Nullable NatsPublishSpool spool, TaskScheduler taskScheduler,
+                                  @Named(TaskExecutors.IO) ExecutorService ioExecutor,
+                                  @Nullable NatsStreamingMetrics metrics) {
+        this.connections = connections;
+        this.serDesRegistry = serDesRegistry;
+        this.config = config;
+        this.payloadCodec = payloadCodec;
+        this.inFlight = new Semaphore(Math.max(1, config.getMaxInFlight()));
+        this.metrics = metrics == null ? NatsStreamingPublisherMetrics.NOOP : metrics.publisherMetrics(this::getInFlight);
+        this.spool = spool;
+        this.taskScheduler = taskScheduler;
+        this.ioExecutor = ioExecutor;
+        this.spoolMetrics = metrics == null || spool == null ? NatsStreamingSpoolMetrics.NOOP
+                : metrics.spoolMetrics(spool::getDepth);
+    }
 
-    @Inject
-    private ObjectMapper mapper;
+    /**
+     * Schedules the drain of the spool, if enabled.
+     */
+    @PostConstruct
+    void startSpoolDrainer() {
+        if (spool != null) {
+            taskScheduler.scheduleWithFixedDelay(spool.getDrainInterval(), spool.getDrainInterval(), this::drainSpool);
+        }
+    }
 
     /**
      *
      * @param subject
-     * @param paylod
-     * @param akHandler
+     * @param payload
+     * @param ackHandler
      * @param <T>
      */
-    public <T> void publish(final String subject, final T paylod, final AckHandler akHandler) {
+    public <T> void publish(final String subject, final T payload, final AckHandler ackHandler) {
+        publishRaw(null, subject, serialize(payload), ackHandler);
+    }
+
+    /**
+     *
+     * @param subject
+     * @param payload
+     * @param <T>
+     */
+    public <T> void  publish(final String subject, final T payload) {
+        publish(subject, payload, null);
+    }
+
+    /**
+     * Publishes the payload without waiting for the server ack. The call blocks while the in-flight window is full.
+     *
+     * @param subject The subject
+     * @param payload The payload
+     * @param <T>     The payload type
+     * @return a future completed with the message guid once the server acks it, with null once spooled, or failed
+     * with a {@link NatsStreamingClientException}
+     */
+    public <T> CompletableFuture<String> publishAsync(final String subject, final T payload) {
+        return publishAsync(null, subject, payload);
+    }
+
+    /**
+     * Publishes the payload on a named connection without waiting for the server ack. Only the default connection
+     * spools its failed publishes.
+     *
+     * @param connectionName The connection name, null for the default connection
+     * @param subject        The subject
+     * @param payload        The payload
+     * @param <T>            The payload type
+     * @return a future completed with the message guid once the server acks it, with null once spooled, or failed
+     * with a {@link NatsStreamingClientException}
+     */
+    public <T> CompletableFuture<String> publishAsync(@Nullable final String connectionName, final String subject,
+                                                      final T payload) {
+        final byte[] data;
         try {
-            final String json = mapper.writeValueAsString(paylod);
-            System.out.println("Json gerado payload=" + json);
-            connection.publish(subject, json.getBytes(), akHandler);
+            data = serialize(payload);
+        } catch (RuntimeException e) {
+            final CompletableFuture<String> result = new CompletableFuture<>();
+            result.completeExceptionally(e instanceof NatsStreamingClientException
+                    ? e : new NatsStreamingClientException("Faill to send message", e));
+            return result;
+        }
+        return publishRawAsync(connectionName, subject, data);
+    }
+
+    /**
+     * Publishes an already serialized body without waiting for the server ack. The call blocks while the in-flight
+     * window is full.
+     *
+     * @param subject The subject
+     * @param data    The message body
+     * @return a future completed with the message guid once the server acks it, with null once spooled, or failed
+     * with a {@link NatsStreamingClientException}
+     */
+    public CompletableFuture<String> publishRawAsync(final String subject, final byte[] data) {
+        return publishRawAsync(null, subject, data);
+    }
+
+    /**
+     * Publishes an already serialized body on a named connection without waiting for the server ack.
+     *
+     * @param connectionName The connection name, null for the default connection
+     * @param subject        The subject
+     * @param data           The message body
+     * @return a future completed with the message guid once the server acks it, with null once spooled, or failed
+     * with a {@link NatsStreamingClientException}
+     */
+    public CompletableFuture<String> publishRawAsync(@Nullable final String connectionName, final String subject,
+                                                     final byte[] data) {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            publishRaw(connectionName, subject, data, (guid, err) -> {
+                if (err != null) {
+                    result.completeExceptionally(
+                            new NatsStreamingClientException("Fail to publish message to [" + subject + "]", err));
+                } else {
+                    result.complete(guid);
+                }
+            });
+        } catch (NatsStreamingClientException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of publishes waiting for the server ack
+     */
+    public int getInFlight() {
+        return Math.max(0, config.getMaxInFlight() - inFlight.availablePermits());
+    }
+
+    /**
+     * Serializes the payload with the serdes registered for its runtime type.
+     *
+     * @param payload The payload
+     * @return the message body
+     */
+    private byte[] serialize(Object payload) {
+        if (payload == null) {
+            return null;
+        }
+        final Class<Object> type = (Class<Object>) payload.getClass();
+        final NatsMessageSerDes<Object> serDes = serDesRegistry.findSerdes(type)
+                .orElseThrow(() -> new NatsStreamingClientException(
+                        "No serdes found to serialize the type [" + type.getName() + "]"));
+        return serDes.serialize(payload);
+    }
+
+    /**
+     * Publishes an already serialized body, or spools it when the spool is enabled and either not empty or the
+     * publish fails. Named connections are never spooled.
+     *
+     * @param connectionName The connection name, null for the default connection
+     * @param subject        The subject
+     * @param data           The message body
+     * @param ackHandler     The handler notified of the server ack, or with a null guid once spooled, may be null
+     */
+    private void publishRaw(final String connectionName, final String subject, final byte[] data,
+                            final AckHandler ackHandler) {
+        if (spool == null || (connectionName != null && !NatsConnection.DEFAULT_CONNECTION.equals(connectionName))) {
+            send(connectionName, subject, data, ackHandler);
+            return;
+        }
+        if (spool.getDepth() > 0) {
+            spoolMessage(subject, data, ackHandler);
+            return;
+        }
+        try {
+            send(null, subject, data, (guid, err) -> {
+                if (err == null) {
+                    if (ackHandler != null) {
+                        ackHandler.onAck(guid, null);
+                    }
+                    return;
+                }
+                ioExecutor.execute(() -> {
+                    try {
+                        spoolMessage(subject, data, ackHandler);
+                    } catch (NatsStreamingClientException e) {
+                        if (ackHandler != null) {
+                            ackHandler.onAck(guid, err);
+                        }
+                    }
+                });
+            });
+        } catch (NatsStreamingClientException e) {
+            spoolMessage(subject, data, ackHandler);
+        }
+    }
+
+    /**
+     * Appends the message to the spool.
+     *
+     * @param subject    The subject
+     * @param data       The message body
+     * @param ackHandler The handler notified with a null guid, may be null
+     */
+    private void spoolMessage(final String subject, final byte[] data, final AckHandler ackHandler) {
+        spool.append(subject, data);
+        spoolMetrics.spooled();
+        if (ackHandler != null) {
+            ackHandler.onAck(null, null);
+        }
+    }
+
+    /**
+     * Publishes the oldest spooled messages with the in-flight window, removing them from the spool once acked by
+     * the server. Stops at the first failure, the messages are published again on the next run.
+     */
+    private void drainSpool() {
+        try {
+            while (spool.getDepth() > 0) {
+                final List<NatsSpooledMessage> batch = spool.peek(Math.max(1, config.getMaxInFlight()));
+                if (batch.isEmpty()) {
+                    return;
+                }
+                final CompletableFuture<?>[] acks = new CompletableFuture[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    final NatsSpooledMessage message = batch.get(i);
+                    final CompletableFuture<String> ack = new CompletableFuture<>();
+                    acks[i] = ack;
+                    send(null, message.getSubject(), message.getData(), (guid, err) -> {
+                        if (err != null) {
+                            ack.completeExceptionally(err);
+                        } else {
+                            ack.complete(guid);
+                        }
+                    });
+                }
+                CompletableFuture.allOf(acks).get(config.getInFlightWait().toMillis(), TimeUnit.MILLISECONDS);
+                spool.commit(batch.get(batch.size() - 1), batch.size());
+                spoolMetrics.drained(batch.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.debug("Fail to drain the publish spool, retrying in {}", spool.getDrainInterval(), e);
+        }
+    }
+
+    /**
+     * Compresses an already serialized body if enabled and publishes it within the in-flight window.
+     *
+     * @param connectionName The connection name, null for the default connection
+     * @param subject        The subject
+     * @param data           The message body
+     * @param ackHandler     The handler notified of the server ack, may be null
+     */
+    private void send(final String connectionName, final String subject, final byte[] data,
+                      final AckHandler ackHandler) {
+        try {
+            acquireInFlight(subject);
+            final long start = metrics.start();
+            try {
+                connections.get(connectionName, subject).publish(subject, payloadCodec.encode(data), (guid, err) -> {
+                    inFlight.release();
+                    if (err != null) {
+                        metrics.error();
+                    } else {
+                        metrics.acked(start);
+                    }
+                    if (ackHandler != null) {
+                        ackHandler.onAck(guid, err);
+                    }
+                });
+            } catch (Exception e) {
+                inFlight.release();
+                metrics.error();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsStreamingClientException("Interrupted while publishing to [" + subject + "]", e);
         } catch (Exception e) {
             throw new NatsStreamingClientException("Faill to send message", e);
         }
     }
 
     /**
+     * Waits for a free slot in the in-flight window.
      *
-     * @param subject
-     * @param paylod
-     * @param <T>
+     * @param subject The subject being published to
+     * @throws InterruptedException if interrupted while waiting
      */
-    public <T> void  publish(final String subject, final T paylod) {
-        publish(subject, paylod, null);
+    private void acquireInFlight(String subject) throws InterruptedException {
+        if (!inFlight.tryAcquire(config.getInFlightWait().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new NatsStreamingClientException("Timeout waiting for a free in-flight slot to publish to ["
+                    + subject + "]");
+        }
     }
 }
-
-
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author alisson
+ */
+@ConfigurationProperties("nats.publisher")
+public class NatsStreamingPublisherConfig {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    public static final Duration DEFAULT_IN_FLIGHT_WAIT = Duration.ofSeconds(30);
+
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    private Duration inFlightWait = DEFAULT_IN_FLIGHT_WAIT;
+
+    /**
+     *
+     * @return the maximum number of asynchronous publishes waiting for the server ack
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     *
+     * @param maxInFlight
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     *
+     * @return how long a publish waits for a free slot when the in-flight window is full
+     */
+    public Duration getInFlightWait() {
+        return inFlightWait;
+    }
+
+    /**
+     *
+     * @param inFlightWait
+     */
+    public void setInFlightWait(Duration inFlightWait) {
+        this.inFlightWait = inFlightWait;
+    }
+}
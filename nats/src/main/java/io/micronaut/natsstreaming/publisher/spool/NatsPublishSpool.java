@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher.spool;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.exceptions.ConfigurationException;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.natsstreaming.exception.NatsStreamingClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An append only log of the messages waiting to be published, stored in segment files. Messages are read in append
+ * order and removed once committed, the segments left by a previous run are drained on startup. A record torn by a
+ * crash is dropped with the records after it in its segment.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(property = NatsPublishSpoolConfig.ENABLED, value = StringUtils.TRUE)
+public class NatsPublishSpool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsPublishSpool.class);
+
+    private static final String SEGMENT_PREFIX = "spool-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final NatsPublishSpoolConfig config;
+
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+
+    private final AtomicLong depth = new AtomicLong();
+
+    /**
+     * Default constructor, opens the segments of the previous run.
+     *
+     * @param config The spool configuration
+     */
+    public NatsPublishSpool(NatsPublishSpoolConfig config) {
+        this.config = config;
+        try {
+            Files.createDirectories(config.getDirectory());
+            final TreeMap<Long, Path> existing = new TreeMap<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(config.getDirectory(),
+                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    final String name = file.getFileName().toString();
+                    existing.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                }
+            }
+            for (Long index : existing.keySet()) {
+                final SpoolSegment segment = new SpoolSegment(index, existing.get(index),
+                        (int) Math.max(config.getSegmentSize(), Files.size(existing.get(index))));
+                segments.addLast(segment);
+                depth.addAndGet(segment.getRecords());
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new ConfigurationException("Fail to open the publish spool in [" + config.getDirectory() + "]", e);
+        }
+        if (depth.get() > 0) {
+            LOG.info("Recovered {} spooled messages from {}", depth.get(), config.getDirectory());
+        }
+    }
+
+    /**
+     * @return how often the spool is drained to the server
+     */
+    public Duration getDrainInterval() {
+        return config.getDrainInterval();
+    }
+
+    /**
+     * @return the number of messages waiting in the spool
+     */
+    public long getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Appends a message to the spool.
+     *
+     * @param subject The subject
+     * @param data    The serialized body
+     * @throws NatsStreamingClientException if the spool is full or can't be written
+     */
+    public synchronized void append(String subject, byte[] data) {
+        final byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
+        final byte[] body = data == null ? new byte[0] : data;
+        SpoolSegment segment = segments.peekLast();
+        if (segment == null || !appendTo(segment, subject, subjectBytes, body)) {
+            if (segments.size() >= config.getMaxSegments()) {
+                throw new NatsStreamingClientException("The publish spool is full, fail to spool the message to ["
+                        + subject + "]");
+            }
+            try {
+                final long index = segment == null ? 0 : segment.getIndex() + 1;
+                segment = new SpoolSegment(index, config.getDirectory().resolve(
+                        String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)), config.getSegmentSize());
+            } catch (IOException e) {
+                throw new NatsStreamingClientException("Fail to create a spool segment", e);
+            }
+            segments.addLast(segment);
+            if (!appendTo(segment, subject, subjectBytes, body)) {
+                throw new NatsStreamingClientException("The message to [" + subject
+                        + "] is larger than a spool segment");
+            }
+        }
+        depth.incrementAndGet();
+    }
+
+    /**
+     * Reads the oldest messages without removing them.
+     *
+     * @param max The maximum number of messages
+     * @return the messages, in append order
+     */
+    public synchronized List<NatsSpooledMessage> peek(int max) {
+        final List<NatsSpooledMessage> messages = new ArrayList<>((int) Math.min(depth.get(), max));
+        for (SpoolSegment segment : segments) {
+            int position = segment.getReadPosition();
+            NatsSpooledMessage message;
+            try {
+                while (messages.size() < max && (message = segment.read(position)) != null) {
+                    messages.add(message);
+                    position = message.getNextPosition();
+                }
+            } catch (IOException e) {
+                throw new NatsStreamingClientException("Fail to read the spool segment " + segment.getIndex(), e);
+            }
+            if (messages.size() >= max) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Removes the messages up to the given one, deleting the drained segments except the one being written.
+     *
+     * @param last  The last message published
+     * @param count The number of messages published
+     */
+    public synchronized void commit(NatsSpooledMessage last, int count) {
+        int remaining = count;
+        while (!segments.isEmpty()) {
+            final SpoolSegment segment = segments.peekFirst();
+            if (segment.getIndex() < last.getSegment()) {
+                remaining -= segment.getRecords();
+                segments.removeFirst();
+                deleteSegment(segment);
+                continue;
+            }
+            try {
+                segment.commit(last.getNextPosition(), remaining);
+            } catch (IOException e) {
+                LOG.warn("Fail to commit the spool segment {}, its messages may be published again",
+                        segment.getIndex(), e);
+            }
+            if (segment.isDrained() && segments.size() > 1) {
+                segments.removeFirst();
+                deleteSegment(segment);
+            }
+            break;
+        }
+        depth.addAndGet(-count);
+    }
+
+    /**
+     * Closes the segments, the messages left are published by the next run.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        for (SpoolSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOG.warn("Fail to close the spool segment {}", segment.getIndex(), e);
+            }
+        }
+        segments.clear();
+    }
+
+    /**
+     * @param segment      The segment
+     * @param subject      The subject
+     * @param subjectBytes The encoded subject
+     * @param body         The serialized body
+     * @return false if the segment has no room left for the message
+     * @throws NatsStreamingClientException if the segment can't be written
+     */
+    private boolean appendTo(SpoolSegment segment, String subject, byte[] subjectBytes, byte[] body) {
+        try {
+            return segment.append(subjectBytes, body, config.isSync());
+        } catch (IOException e) {
+            throw new NatsStreamingClientException("Fail to spool the message to [" + subject + "]", e);
+        }
+    }
+
+    /**
+     * @param segment The drained segment
+     */
+    private void deleteSegment(SpoolSegment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            LOG.warn("Fail to delete the spool segment {}", segment.getIndex(), e);
+        }
+    }
+}
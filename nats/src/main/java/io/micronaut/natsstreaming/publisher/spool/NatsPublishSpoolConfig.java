@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher.spool;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * @author alisson
+ */
+@ConfigurationProperties(NatsPublishSpoolConfig.PREFIX)
+public class NatsPublishSpoolConfig {
+
+    public static final String PREFIX = "nats.publisher.spool";
+
+    public static final String ENABLED = PREFIX + ".enabled";
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    public static final Duration DEFAULT_DRAIN_INTERVAL = Duration.ofSeconds(1);
+
+    private boolean enabled;
+
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "nats-spool");
+
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+    private Duration drainInterval = DEFAULT_DRAIN_INTERVAL;
+
+    private boolean sync;
+
+    /**
+     *
+     * @return whether failed publishes are spooled to disk
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *
+     * @return the directory of the spool segments
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     *
+     * @param directory
+     */
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     *
+     * @return the size of a segment file, in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     *
+     * @param segmentSize
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     *
+     * @return the maximum number of segments, publishes fail once they are all full
+     */
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    /**
+     *
+     * @param maxSegments
+     */
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     *
+     * @return how often the spool is drained to the server
+     */
+    public Duration getDrainInterval() {
+        return drainInterval;
+    }
+
+    /**
+     *
+     * @param drainInterval
+     */
+    public void setDrainInterval(Duration drainInterval) {
+        this.drainInterval = drainInterval;
+    }
+
+    /**
+     *
+     * @return whether every append is forced to the disk, otherwise the spool survives process crashes only
+     */
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     *
+     * @param sync
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher.spool;
+
+/**
+ * A message read from the spool.
+ *
+ * @author alisson
+ */
+public final class NatsSpooledMessage {
+
+    private final String subject;
+
+    private final byte[] data;
+
+    private final long segment;
+
+    private final int nextPosition;
+
+    /**
+     * @param subject      The subject
+     * @param data         The body
+     * @param segment      The index of the segment holding the message
+     * @param nextPosition The position of the next message in the segment
+     */
+    NatsSpooledMessage(String subject, byte[] data, long segment, int nextPosition) {
+        this.subject = subject;
+        this.data = data;
+        this.segment = segment;
+        this.nextPosition = nextPosition;
+    }
+
+    /**
+     * @return the subject
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the body
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the index of the segment holding the message
+     */
+    long getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return the position of the next message in the segment
+     */
+    int getNextPosition() {
+        return nextPosition;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher.spool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A segment file of the spool, written with positional channel writes. The file starts with the read position,
+ * followed by the records: the record length, the CRC32 of the record, then the subject and the body, each prefixed
+ * by its length. When the segment is reopened, the records are read up to the first truncated or corrupted one,
+ * left by a crash during a write, and the file is truncated there.
+ *
+ * @author alisson
+ */
+final class SpoolSegment {
+
+    /**
+     * The length of the segment header, holding the read position.
+     */
+    static final int HEADER_LENGTH = 8;
+
+    /**
+     * The length of the record header, holding the record length and its CRC32.
+     */
+    static final int RECORD_HEADER_LENGTH = 8;
+
+    private final long index;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final int size;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+    private final CRC32 crc = new CRC32();
+
+    private int readPosition;
+
+    private int writePosition;
+
+    private int records;
+
+    /**
+     * Opens or creates the segment, recovering the records written before.
+     *
+     * @param index The segment index
+     * @param path  The segment file
+     * @param size  The maximum segment size
+     * @throws IOException if the file can't be read
+     */
+    SpoolSegment(long index, Path path, int size) throws IOException {
+        this.index = index;
+        this.path = path;
+        this.size = size;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        final long fileSize = channel.size();
+        if (fileSize < HEADER_LENGTH) {
+            writeReadPosition(HEADER_LENGTH);
+            this.readPosition = HEADER_LENGTH;
+            this.writePosition = HEADER_LENGTH;
+            return;
+        }
+        header.clear();
+        readFully(header, 0);
+        final long committed = header.getLong(0);
+        int position = HEADER_LENGTH;
+        while (true) {
+            final byte[] record = readRecord(position, fileSize);
+            if (record == null) {
+                break;
+            }
+            position += RECORD_HEADER_LENGTH + record.length;
+            if (position > committed) {
+                records++;
+            }
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        this.writePosition = position;
+        this.readPosition = (int) Math.max(HEADER_LENGTH, Math.min(committed, position));
+    }
+
+    /**
+     * @return the segment index
+     */
+    long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the number of records not drained yet
+     */
+    int getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the position of the first record not drained yet
+     */
+    int getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * @return true if every record was drained
+     */
+    boolean isDrained() {
+        return readPosition >= writePosition;
+    }
+
+    /**
+     * @param subject The subject
+     * @param data    The body
+     * @param sync    Whether to force the record to the disk
+     * @return false if the segment has no room left for the record
+     * @throws IOException if the record can't be written
+     */
+    boolean append(byte[] subject, byte[] data, boolean sync) throws IOException {
+        final int length = Integer.BYTES + subject.length + Integer.BYTES + data.length;
+        if ((long) writePosition + RECORD_HEADER_LENGTH + length > size) {
+            return false;
+        }
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+        record.putInt(length).putInt(0)
+                .putInt(subject.length).put(subject)
+                .putInt(data.length).put(data);
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER_LENGTH, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+        int position = writePosition;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        writePosition = position;
+        records++;
+        return true;
+    }
+
+    /**
+     * @param position The position of the record
+     * @return the record, or null if no record was written at this position
+     * @throws IOException if the record can't be read
+     */
+    NatsSpooledMessage read(int position) throws IOException {
+        if (position >= writePosition) {
+            return null;
+        }
+        final byte[] record = readRecord(position, writePosition);
+        if (record == null) {
+            throw new IOException("Corrupted record at " + position + " of the spool segment " + index);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(record);
+        final byte[] subject = new byte[buffer.getInt()];
+        buffer.get(subject);
+        final byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        return new NatsSpooledMessage(new String(subject, StandardCharsets.UTF_8), data, index,
+                position + RECORD_HEADER_LENGTH + record.length);
+    }
+
+    /**
+     * Marks the records before the position as drained.
+     *
+     * @param position The position of the next record to drain
+     * @param drained  The number of records drained
+     * @throws IOException if the read position can't be written
+     */
+    void commit(int position, int drained) throws IOException {
+        readPosition = position;
+        records = Math.max(0, records - drained);
+        writeReadPosition(position);
+    }
+
+    /**
+     * Closes the segment, deleting its file.
+     *
+     * @throws IOException if the file can't be deleted
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Closes the segment, keeping its file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    void close() throws IOException {
+        channel.force(true);
+        channel.close();
+    }
+
+    /**
+     * Reads the record at a position, checking its length and CRC32.
+     *
+     * @param position The position of the record
+     * @param limit    The end of the readable records
+     * @return the record without its header, or null if it is truncated or corrupted
+     * @throws IOException if the file can't be read
+     */
+    private byte[] readRecord(int position, long limit) throws IOException {
+        if (position + RECORD_HEADER_LENGTH > limit) {
+            return null;
+        }
+        final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        readFully(recordHeader, position);
+        final int length = recordHeader.getInt(0);
+        if (length < 2 * Integer.BYTES || position + RECORD_HEADER_LENGTH + (long) length > limit) {
+            return null;
+        }
+        final byte[] record = new byte[length];
+        readFully(ByteBuffer.wrap(record), position + RECORD_HEADER_LENGTH);
+        crc.reset();
+        crc.update(record, 0, length);
+        if ((int) crc.getValue() != recordHeader.getInt(Integer.BYTES)) {
+            return null;
+        }
+        final int subjectLength = ByteBuffer.wrap(record).getInt(0);
+        if (subjectLength < 0 || subjectLength > length - 2 * Integer.BYTES) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * @param buffer   The buffer to fill
+     * @param position The file position
+     * @throws IOException if the file ends before the buffer is filled
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the spool segment " + index);
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * @param position The position of the next record to drain
+     * @throws IOException if the header can't be written
+     */
+    private void writeReadPosition(long position) throws IOException {
+        header.clear();
+        header.putLong(0, position);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.micronaut.core.type.Argument;
+import io.nats.streaming.Message;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes the avro generated records with the binary encoding, without the schema. The schema, reader and
+ * writer of each type are created once, the encoders and decoders are reused per thread.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(classes = SpecificRecord.class)
+public class AvroNatsMessageSerDes implements NatsMessageSerDes<Object> {
+
+    /**
+     * The order of this serDes.
+     */
+    public static final Integer ORDER = 130;
+
+    private static final ThreadLocal<BinaryEncoder> ENCODER = new ThreadLocal<>();
+
+    private static final ThreadLocal<BinaryDecoder> DECODER = new ThreadLocal<>();
+
+    private final Map<Class<?>, SpecificDatumReader<Object>> readers = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, SpecificDatumWriter<Object>> writers = new ConcurrentHashMap<>();
+
+    @Nullable
+    @Override
+    public Object deserialize(Message message, Argument<Object> type) {
+        byte[] body = message.getData();
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        final SpecificDatumReader<Object> reader = readers.computeIfAbsent(type.getType(),
+                recordType -> new SpecificDatumReader<>(SpecificData.get().getSchema(recordType)));
+        try {
+            final BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, DECODER.get());
+            DECODER.set(decoder);
+            return reader.read(null, decoder);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException(
+                    "Error decoding avro record for type [" + type.getName() + "]: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object data) {
+        if (data == null) {
+            return null;
+        }
+        final SpecificDatumWriter<Object> writer = writers.computeIfAbsent(data.getClass(),
+                recordType -> new SpecificDatumWriter<>(((SpecificRecord) data).getSchema()));
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, ENCODER.get());
+            ENCODER.set(encoder);
+            writer.write(data, encoder);
+            encoder.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Error encoding avro record [" + data + "]: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public boolean supports(Argument<Object> argument) {
+        return SpecificRecord.class.isAssignableFrom(argument.getType());
+    }
+}
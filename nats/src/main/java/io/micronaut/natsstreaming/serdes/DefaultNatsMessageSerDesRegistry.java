@@ -19,16 +19,30 @@ import io.micronaut.core.type.Argument;
 
 import javax.inject.Singleton;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Resolves the serdes of a type once and caches the result, including the types no serdes supports. Each cache
+ * stops growing at {@link #MAX_CACHED_TYPES} entries, later types are resolved on every call.
+ *
  * @author alisson
  */
 @Singleton
 public class DefaultNatsMessageSerDesRegistry implements NatsMessageSerDesRegistry {
 
+    /**
+     * The maximum number of entries of each lookup cache.
+     */
+    public static final int MAX_CACHED_TYPES = 1024;
+
     private final NatsMessageSerDes<?>[] serDes;
 
+    private final Map<Argument<?>, Optional<NatsMessageSerDes<?>>> serDesByArgument = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Optional<NatsMessageSerDes<?>>> serDesByClass = new ConcurrentHashMap<>();
+
     /**
      * Default constructor.
      *
@@ -46,9 +60,35 @@ public class DefaultNatsMessageSerDesRegistry implements NatsMessageSerDesRegist
      */
     @Override
     public <T> Optional<NatsMessageSerDes<T>> findSerdes(Argument<T> type) {
+        Optional<NatsMessageSerDes<?>> found = serDesByArgument.get(type);
+        if (found == null) {
+            found = resolve(type);
+            if (serDesByArgument.size() < MAX_CACHED_TYPES) {
+                serDesByArgument.putIfAbsent(type, found);
+            }
+        }
+        return (Optional) found;
+    }
+
+    @Override
+    public <T> Optional<NatsMessageSerDes<T>> findSerdes(Class<T> type) {
+        Optional<NatsMessageSerDes<?>> found = serDesByClass.get(type);
+        if (found == null) {
+            found = resolve(Argument.of(type));
+            if (serDesByClass.size() < MAX_CACHED_TYPES) {
+                serDesByClass.putIfAbsent(type, found);
+            }
+        }
+        return (Optional) found;
+    }
+
+    /**
+     * @param type The type
+     * @return the first registered serdes supporting the type
+     */
+    private Optional<NatsMessageSerDes<?>> resolve(Argument<?> type) {
         return Arrays.stream(serDes)
                 .filter(serDes -> serDes.supports((Argument) type))
-                .map(serDes -> (NatsMessageSerDes<T>) serDes)
                 .findFirst();
     }
 }
@@ -0,0 +1,650 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micronaut.core.beans.BeanIntrospection;
+import io.micronaut.core.beans.BeanIntrospector;
+import io.micronaut.core.beans.BeanProperty;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.micronaut.core.type.Argument;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds JSON readers and writers from the compile time {@link BeanIntrospection} of the payload types, writing
+ * and reading the properties with the jackson streaming API. A type is supported when it is introspected and every
+ * property is a scalar, an enum, a collection, a map with string keys or another supported type.
+ *
+ * @author alisson
+ */
+final class IntrospectedJsonCodecs {
+
+    private final Map<Class<?>, Optional<BeanCodec>> beans = new ConcurrentHashMap<>();
+
+    /**
+     * @param type The payload type
+     * @return the codec of the type, empty if the type is not supported
+     */
+    Optional<BeanCodec> beanCodec(Class<?> type) {
+        final Optional<BeanCodec> cached = beans.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (this) {
+            final Map<Class<?>, BeanCodec> building = new HashMap<>();
+            final BeanCodec codec = resolveBean(type, building);
+            if (codec == null) {
+                beans.putIfAbsent(type, Optional.empty());
+            } else {
+                building.forEach((builtType, builtCodec) -> beans.putIfAbsent(builtType, Optional.of(builtCodec)));
+            }
+            return beans.get(type);
+        }
+    }
+
+    /**
+     * @param type     The bean type
+     * @param building The codecs being built, referenced by recursive types
+     * @return the codec, null if the type is not supported
+     */
+    private BeanCodec resolveBean(Class<?> type, Map<Class<?>, BeanCodec> building) {
+        final Optional<BeanCodec> cached = beans.get(type);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        if (building.containsKey(type)) {
+            return building.get(type);
+        }
+        final Optional<BeanIntrospection<Object>> introspection =
+                BeanIntrospector.SHARED.findIntrospection((Class<Object>) type);
+        if (introspection.isEmpty()) {
+            return null;
+        }
+        final Argument<?>[] constructorArguments = introspection.get().getConstructorArguments();
+        final BeanCodec codec = new BeanCodec(introspection.get(), constructorArguments.length);
+        building.put(type, codec);
+        for (int i = 0; i < constructorArguments.length; i++) {
+            final ValueCodec valueCodec = resolveValue(constructorArguments[i], building);
+            if (valueCodec == null) {
+                return null;
+            }
+            codec.addConstructorArgument(i, constructorArguments[i], valueCodec);
+        }
+        for (BeanProperty<Object, Object> property : introspection.get().getBeanProperties()) {
+            final ValueCodec valueCodec = resolveValue(property.asArgument(), building);
+            if (valueCodec == null) {
+                return null;
+            }
+            codec.addProperty(property, valueCodec);
+        }
+        return codec;
+    }
+
+    /**
+     * @param argument The value type
+     * @param building The codecs being built
+     * @return the codec, null if the type is not supported
+     */
+    private ValueCodec resolveValue(Argument<?> argument, Map<Class<?>, BeanCodec> building) {
+        final Class<?> type = argument.getType();
+        for (ScalarCodec scalar : ScalarCodec.values()) {
+            if (scalar.supports(type)) {
+                return scalar;
+            }
+        }
+        if (type.isEnum()) {
+            return new EnumCodec((Class) type);
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            final Supplier<Collection<Object>> factory;
+            if (type.isAssignableFrom(ArrayList.class)) {
+                factory = ArrayList::new;
+            } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+                factory = LinkedHashSet::new;
+            } else {
+                return null;
+            }
+            final ValueCodec element = argument.getFirstTypeVariable()
+                    .map(elementType -> resolveValue(elementType, building))
+                    .orElse(null);
+            return element == null ? null : new CollectionCodec(element, factory);
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            final Argument<?>[] parameters = argument.getTypeParameters();
+            if (!type.isAssignableFrom(LinkedHashMap.class) || parameters.length != 2
+                    || parameters[0].getType() != String.class) {
+                return null;
+            }
+            final ValueCodec value = resolveValue(parameters[1], building);
+            return value == null ? null : new MapCodec(value);
+        }
+        if (type.isArray() || type.isPrimitive() || type.getName().startsWith("java.")) {
+            return null;
+        }
+        return resolveBean(type, building);
+    }
+
+    /**
+     * @param parser The parser positioned on the value
+     * @param codec  The codec of the value
+     * @return the value, null for a json null
+     * @throws IOException if the value can't be read
+     */
+    private static Object readValue(JsonParser parser, ValueCodec codec) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : codec.read(parser);
+    }
+
+    /**
+     * @param parser   The parser positioned on the value
+     * @param expected The description of the expected value
+     * @return the error reporting the token found instead of the expected value
+     */
+    private static SerializationException mismatch(JsonParser parser, String expected) {
+        return new SerializationException("Expected " + expected + " but found " + parser.currentToken());
+    }
+
+    /**
+     * @param parser   The parser positioned on the value
+     * @param integral Whether only integral numbers are accepted
+     */
+    private static void expectNumber(JsonParser parser, boolean integral) {
+        final JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_NUMBER_INT && (integral || token != JsonToken.VALUE_NUMBER_FLOAT)) {
+            throw mismatch(parser, integral ? "a json integer" : "a json number");
+        }
+    }
+
+    /**
+     * @param parser   The parser positioned on the value
+     * @param expected The description of the expected value
+     * @param parse    Parses the text of the json string
+     * @param <T>      The type of the value
+     * @return the value
+     * @throws IOException if the value can't be read
+     */
+    private static <T> T parseText(JsonParser parser, String expected, Function<String, T> parse) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw mismatch(parser, expected);
+        }
+        final String text = parser.getText();
+        try {
+            return parse.apply(text);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new SerializationException("Expected " + expected + " but found [" + text + "]", e);
+        }
+    }
+
+    /**
+     * @param generator The generator
+     * @param codec     The codec of the value
+     * @param value     The value, may be null
+     * @throws IOException if the value can't be written
+     */
+    private static void writeValue(JsonGenerator generator, ValueCodec codec, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            codec.write(generator, value);
+        }
+    }
+
+    /**
+     * Reads and writes a json value.
+     */
+    interface ValueCodec {
+
+        /**
+         * @param generator The generator
+         * @param value     The value, never null
+         * @throws IOException if the value can't be written
+         */
+        void write(JsonGenerator generator, Object value) throws IOException;
+
+        /**
+         * @param parser The parser positioned on the value, never a json null
+         * @return the value
+         * @throws IOException if the value can't be read
+         */
+        Object read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * The codecs of the scalar types, written the way jackson writes them with dates as ISO strings.
+     */
+    enum ScalarCodec implements ValueCodec {
+        STRING(String.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeString((String) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                if (!parser.currentToken().isScalarValue()) {
+                    throw mismatch(parser, "a json string");
+                }
+                return parser.getText();
+            }
+        },
+        BOOLEAN(Boolean.class, boolean.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                if (!parser.currentToken().isBoolean()) {
+                    throw mismatch(parser, "a json boolean");
+                }
+                return parser.getBooleanValue();
+            }
+        },
+        INTEGER(Integer.class, int.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Integer) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                expectNumber(parser, true);
+                return parser.getIntValue();
+            }
+        },
+        LONG(Long.class, long.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Long) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                expectNumber(parser, true);
+                return parser.getLongValue();
+            }
+        },
+        SHORT(Short.class, short.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Short) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                expectNumber(parser, true);
+                return parser.getShortValue();
+            }
+        },
+        DOUBLE(Double.class, double.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Double) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                expectNumber(parser, false);
+                return parser.getDoubleValue();
+            }
+        },
+        FLOAT(Float.class, float.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Float) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                expectNumber(parser, false);
+                return parser.getFloatValue();
+            }
+        },
+        BIG_DECIMAL(BigDecimal.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((BigDecimal) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    return parseText(parser, "a decimal", BigDecimal::new);
+                }
+                expectNumber(parser, false);
+                return parser.getDecimalValue();
+            }
+        },
+        BIG_INTEGER(BigInteger.class) {
+            @Override
+            public void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((BigInteger) value);
+            }
+
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    return parseText(parser, "an integer", BigInteger::new);
+                }
+                expectNumber(parser, true);
+                return parser.getBigIntegerValue();
+            }
+        },
+        UUID_VALUE(UUID.class) {
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                return parseText(parser, "an uuid", UUID::fromString);
+            }
+        },
+        INSTANT(Instant.class) {
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                return parseText(parser, "an instant", Instant::parse);
+            }
+        },
+        LOCAL_DATE(LocalDate.class) {
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                return parseText(parser, "a local date", LocalDate::parse);
+            }
+        },
+        LOCAL_DATE_TIME(LocalDateTime.class) {
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                return parseText(parser, "a local date time", LocalDateTime::parse);
+            }
+        },
+        OFFSET_DATE_TIME(OffsetDateTime.class) {
+            @Override
+            public Object read(JsonParser parser) throws IOException {
+                return parseText(parser, "an offset date time", OffsetDateTime::parse);
+            }
+        };
+
+        private final Class<?>[] types;
+
+        /**
+         * @param types The supported types
+         */
+        ScalarCodec(Class<?>... types) {
+            this.types = types;
+        }
+
+        /**
+         * Writes the value as a string, the default of the types parsed from their text.
+         *
+         * @param generator The generator
+         * @param value     The value
+         * @throws IOException if the value can't be written
+         */
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeString(value.toString());
+        }
+
+        /**
+         * @param type The type
+         * @return true if this codec handles the type
+         */
+        boolean supports(Class<?> type) {
+            for (Class<?> supported : types) {
+                if (supported == type) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes enums by name.
+     */
+    private static final class EnumCodec implements ValueCodec {
+
+        private final Class<Enum> type;
+
+        /**
+         * @param type The enum type
+         */
+        EnumCodec(Class<Enum> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeString(((Enum<?>) value).name());
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            return parseText(parser, "a constant of [" + type.getName() + "]", name -> Enum.valueOf(type, name));
+        }
+    }
+
+    /**
+     * Writes collections as json arrays.
+     */
+    private static final class CollectionCodec implements ValueCodec {
+
+        private final ValueCodec element;
+
+        private final Supplier<Collection<Object>> factory;
+
+        /**
+         * @param element The codec of the elements
+         * @param factory Creates the collection read
+         */
+        CollectionCodec(ValueCodec element, Supplier<Collection<Object>> factory) {
+            this.element = element;
+            this.factory = factory;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeStartArray();
+            for (Object item : (Collection<?>) value) {
+                writeValue(generator, element, item);
+            }
+            generator.writeEndArray();
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new SerializationException("Expected a json array but found " + parser.currentToken());
+            }
+            final Collection<Object> collection = factory.get();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                collection.add(readValue(parser, element));
+            }
+            return collection;
+        }
+    }
+
+    /**
+     * Writes maps with string keys as json objects.
+     */
+    private static final class MapCodec implements ValueCodec {
+
+        private final ValueCodec value;
+
+        /**
+         * @param value The codec of the values
+         */
+        MapCodec(ValueCodec value) {
+            this.value = value;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object map) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) map).entrySet()) {
+                generator.writeFieldName((String) entry.getKey());
+                writeValue(generator, value, entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Expected a json object but found " + parser.currentToken());
+            }
+            final Map<String, Object> map = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                parser.nextToken();
+                map.put(key, readValue(parser, value));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Writes an introspected bean as a json object, instantiating it through its introspection when reading.
+     */
+    static final class BeanCodec implements ValueCodec {
+
+        private final BeanIntrospection<Object> introspection;
+
+        private final ValueCodec[] constructorCodecs;
+
+        private final Object[] constructorDefaults;
+
+        private final Map<String, Integer> constructorIndexes = new HashMap<>();
+
+        private final List<BeanProperty<Object, Object>> properties = new ArrayList<>();
+
+        private final List<ValueCodec> propertyCodecs = new ArrayList<>();
+
+        private final Map<String, Integer> propertyIndexes = new HashMap<>();
+
+        /**
+         * @param introspection    The introspection of the bean
+         * @param constructorCount The number of constructor arguments
+         */
+        BeanCodec(BeanIntrospection<Object> introspection, int constructorCount) {
+            this.introspection = introspection;
+            this.constructorCodecs = new ValueCodec[constructorCount];
+            this.constructorDefaults = new Object[constructorCount];
+        }
+
+        /**
+         * @param index    The position of the argument
+         * @param argument The constructor argument
+         * @param codec    The codec of the argument
+         */
+        void addConstructorArgument(int index, Argument<?> argument, ValueCodec codec) {
+            constructorCodecs[index] = codec;
+            constructorIndexes.put(argument.getName(), index);
+            if (argument.getType().isPrimitive()) {
+                constructorDefaults[index] = Array.get(Array.newInstance(argument.getType(), 1), 0);
+            }
+        }
+
+        /**
+         * @param property The bean property
+         * @param codec    The codec of the property
+         */
+        void addProperty(BeanProperty<Object, Object> property, ValueCodec codec) {
+            propertyIndexes.put(property.getName(), properties.size());
+            properties.add(property);
+            propertyCodecs.add(codec);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object bean) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < properties.size(); i++) {
+                final BeanProperty<Object, Object> property = properties.get(i);
+                if (!property.isWriteOnly()) {
+                    generator.writeFieldName(property.getName());
+                    writeValue(generator, propertyCodecs.get(i), property.get(bean));
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Expected a json object for the type ["
+                        + introspection.getBeanType().getName() + "] but found " + parser.currentToken());
+            }
+            final Object[] constructorValues = constructorCodecs.length == 0
+                    ? constructorDefaults : constructorDefaults.clone();
+            Object[] propertyValues = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                parser.nextToken();
+                final Integer constructorIndex = constructorIndexes.get(name);
+                if (constructorIndex != null) {
+                    final Object value = readValue(parser, constructorCodecs[constructorIndex]);
+                    if (value != null) {
+                        constructorValues[constructorIndex] = value;
+                    }
+                    continue;
+                }
+                final Integer propertyIndex = propertyIndexes.get(name);
+                if (propertyIndex == null || properties.get(propertyIndex).isReadOnly()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                final Object value = readValue(parser, propertyCodecs.get(propertyIndex));
+                if (value != null) {
+                    if (propertyValues == null) {
+                        propertyValues = new Object[properties.size()];
+                    }
+                    propertyValues[propertyIndex] = value;
+                }
+            }
+            final Object bean = constructorValues.length == 0
+                    ? introspection.instantiate() : introspection.instantiate(constructorValues);
+            if (propertyValues != null) {
+                for (int i = 0; i < propertyValues.length; i++) {
+                    if (propertyValues[i] != null) {
+                        properties.get(i).set(bean, propertyValues[i]);
+                    }
+                }
+            }
+            return bean;
+        }
+    }
+}
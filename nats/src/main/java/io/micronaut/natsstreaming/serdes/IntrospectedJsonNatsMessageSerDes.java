@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.reflect.ClassUtils;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.micronaut.core.type.Argument;
+import io.micronaut.core.util.StringUtils;
+import io.nats.streaming.Message;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.io.IOException;
+
+/**
+ * Serializes {@link io.micronaut.core.annotation.Introspected} payloads to JSON with the readers and writers built
+ * from their compile time introspection, without jackson databind nor reflection. Runs before the
+ * {@link JsonNatsMessageSerDes}, which still handles the types this serdes does not support. Jackson annotations
+ * on the payloads are not applied, so it must be enabled with {@value #ENABLED}.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(property = IntrospectedJsonNatsMessageSerDes.ENABLED, value = StringUtils.TRUE)
+public class IntrospectedJsonNatsMessageSerDes implements NatsMessageSerDes<Object> {
+
+    /**
+     * The order of this serDes.
+     */
+    public static final Integer ORDER = 150;
+
+    /**
+     * The property enabling this serDes.
+     */
+    public static final String ENABLED = "nats.serdes.introspection.enabled";
+
+    private final JsonFactory jsonFactory;
+
+    private final IntrospectedJsonCodecs codecs = new IntrospectedJsonCodecs();
+
+    /**
+     * Default constructor.
+     * @param objectMapper The jackson object mapper, providing the json factory
+     */
+    public IntrospectedJsonNatsMessageSerDes(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    @Nullable
+    @Override
+    public Object deserialize(Message message, Argument<Object> type) {
+        byte[] body = message.getData();
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        final IntrospectedJsonCodecs.BeanCodec codec = codecs.beanCodec(type.getType())
+                .orElseThrow(() -> new SerializationException("The type [" + type.getName() + "] is not supported"));
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parser.nextToken();
+            return codec.read(parser);
+        } catch (IOException e) {
+            throw new SerializationException(
+                    "Error decoding JSON stream for type [" + type.getName() + "]: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object data) {
+        if (data == null) {
+            return null;
+        }
+        final IntrospectedJsonCodecs.BeanCodec codec = codecs.beanCodec(data.getClass())
+                .orElseThrow(() -> new SerializationException(
+                        "The type [" + data.getClass().getName() + "] is not supported"));
+        try (ByteArrayBuilder buffer = new ByteArrayBuilder()) {
+            try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+                codec.write(generator, data);
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Error encoding object [" + data + "] to JSON: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public boolean supports(Argument<Object> argument) {
+        final Class<Object> type = argument.getType();
+        return !argument.hasTypeVariables() && !ClassUtils.isJavaBasicType(type) && codecs.beanCodec(type).isPresent();
+    }
+}
@@ -26,8 +26,11 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author alisson
@@ -40,8 +43,18 @@ public class JavaLangNatsMessageSerDes implements NatsMessageSerDes<Object> {
      */
     public static final Integer ORDER = 100;
 
+    private static final Class<?>[] INDEXED_TYPES = {
+        String.class, Boolean.class, boolean.class, Short.class, short.class, Integer.class, int.class,
+        Long.class, long.class, Float.class, float.class, Double.class, double.class, byte[].class,
+        ByteBuffer.class, UUID.class
+    };
+
     protected final List<NatsMessageSerDes> javaSerDes = new ArrayList<>(10);
 
+    private final Map<Class<?>, NatsMessageSerDes> serDesByType = new HashMap<>();
+
+    private final Map<Class<?>, NatsMessageSerDes> serDesByRuntimeType = new ConcurrentHashMap<>();
+
     /**
      * Default constructor.
      */
@@ -56,6 +69,13 @@ public class JavaLangNatsMessageSerDes implements NatsMessageSerDes<Object> {
         javaSerDes.add(getByteArraySerDes());
         javaSerDes.add(getByteBufferSerDes());
         javaSerDes.add(getUUIDSerDes());
+        for (Class<?> type : INDEXED_TYPES) {
+            final NatsMessageSerDes found = scan(Argument.of(type));
+            if (found != null) {
+                serDesByType.put(type, found);
+            }
+        }
+        serDesByRuntimeType.putAll(serDesByType);
     }
 
     @Override
@@ -63,7 +83,12 @@ public class JavaLangNatsMessageSerDes implements NatsMessageSerDes<Object> {
         if (data == null) {
             return null;
         }
-        return findSerDes(Argument.of(data.getClass())).serialize(data);
+        final NatsMessageSerDes serDes = findSerDes(data.getClass());
+        if (serDes == null) {
+            throw new SerializationException("No serdes found to serialize the type [" + data.getClass().getName()
+                    + "]");
+        }
+        return serDes.serialize(data);
     }
 
     @Override
@@ -88,13 +113,45 @@ public class JavaLangNatsMessageSerDes implements NatsMessageSerDes<Object> {
     }
 
     /**
-     * Finds the correct serDes based on the type.
+     * Finds the correct serDes based on the type, with a map lookup for the built in types.
      * @param type The java type
      * @return The serdes, or null if none can be found
      */
     @Nullable
     protected NatsMessageSerDes findSerDes(Argument<?> type) {
-        return javaSerDes.stream().filter(serDes -> serDes.supports(type)).findFirst().orElse(null);
+        final NatsMessageSerDes found = serDesByType.get(type.getType());
+        return found != null ? found : scan(type);
+    }
+
+    /**
+     * Finds the serdes of a runtime type without allocating, the types found by a scan are cached.
+     * @param type The runtime type of a value
+     * @return The serdes, or null if none can be found
+     */
+    @Nullable
+    protected NatsMessageSerDes findSerDes(Class<?> type) {
+        NatsMessageSerDes found = serDesByRuntimeType.get(type);
+        if (found == null) {
+            found = scan(Argument.of(type));
+            if (found != null) {
+                serDesByRuntimeType.put(type, found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param type The java type
+     * @return the first serdes of {@link #javaSerDes} supporting the type, or null
+     */
+    @Nullable
+    private NatsMessageSerDes scan(Argument<?> type) {
+        for (NatsMessageSerDes serDes : javaSerDes) {
+            if (serDes.supports(type)) {
+                return serDes;
+            }
+        }
+        return null;
     }
 
     /**
@@ -32,4 +32,15 @@ public interface NatsMessageSerDesRegistry {
      * @return An optional serdes
      */
     <T> Optional<NatsMessageSerDes<T>> findSerdes(Argument<T> type);
+
+    /**
+     * Returns the serdes that supports the given class, used to serialize payloads by their runtime type.
+     *
+     * @param type The class
+     * @param <T> The type to be serialized/deserialized
+     * @return An optional serdes
+     */
+    default <T> Optional<NatsMessageSerDes<T>> findSerdes(Class<T> type) {
+        return findSerdes(Argument.of(type));
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.serialize.exceptions.SerializationException;
+import io.micronaut.core.type.Argument;
+import io.nats.streaming.Message;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes the protobuf generated messages. The parser of each type is looked up once, from the default
+ * instance of the message.
+ *
+ * @author alisson
+ */
+@Singleton
+@Requires(classes = MessageLite.class)
+public class ProtobufNatsMessageSerDes implements NatsMessageSerDes<Object> {
+
+    /**
+     * The order of this serDes.
+     */
+    public static final Integer ORDER = 120;
+
+    private final Map<Class<?>, Parser<?>> parsers = new ConcurrentHashMap<>();
+
+    @Nullable
+    @Override
+    public Object deserialize(Message message, Argument<Object> type) {
+        byte[] body = message.getData();
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        try {
+            return parsers.computeIfAbsent(type.getType(), ProtobufNatsMessageSerDes::parserOf).parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+            throw new SerializationException(
+                    "Error decoding protobuf message for type [" + type.getName() + "]: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object data) {
+        if (data == null) {
+            return null;
+        }
+        return ((MessageLite) data).toByteArray();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public boolean supports(Argument<Object> argument) {
+        return MessageLite.class.isAssignableFrom(argument.getType());
+    }
+
+    /**
+     * @param type The generated message type
+     * @return the parser of the type
+     */
+    private static Parser<?> parserOf(Class<?> type) {
+        try {
+            return ((MessageLite) type.getMethod("getDefaultInstance").invoke(null)).getParserForType();
+        } catch (ReflectiveOperationException e) {
+            throw new SerializationException("The type [" + type.getName() + "] is not a generated protobuf message", e);
+        }
+    }
+}
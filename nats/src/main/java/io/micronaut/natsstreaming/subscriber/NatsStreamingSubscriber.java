@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.subscriber;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.natsstreaming.compression.NatsPayloadCodec;
+import io.micronaut.natsstreaming.connection.NatsStreamingConnections;
+import io.micronaut.natsstreaming.exception.NatsStreamingClientException;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDes;
+import io.micronaut.natsstreaming.serdes.NatsMessageSerDesRegistry;
+import io.nats.streaming.SubscriptionOptions;
+import org.reactivestreams.Publisher;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+/**
+ * Exposes subjects as reactive streams {@link Publisher}s. Every subscriber of a returned publisher gets its own
+ * subscription with manual acks: the server sends at most the max in flight of the options without an ack, the
+ * messages are emitted only as requested and acked once the subscriber's {@code onNext} returns. A slow subscriber
+ * therefore holds the messages on the server instead of buffering them.
+ *
+ * @author alisson
+ */
+@Singleton
+public class NatsStreamingSubscriber {
+
+    private final NatsStreamingConnections connections;
+
+    private final NatsMessageSerDesRegistry serDesRegistry;
+
+    private final NatsPayloadCodec payloadCodec;
+
+    /**
+     * Default constructor.
+     *
+     * @param connections    The connections to subscribe on
+     * @param serDesRegistry The registry to get a deserializer
+     * @param payloadCodec   The codec decompressing the bodies
+     */
+    public NatsStreamingSubscriber(NatsStreamingConnections connections, NatsMessageSerDesRegistry serDesRegistry,
+                                   NatsPayloadCodec payloadCodec) {
+        this.connections = connections;
+        this.serDesRegistry = serDesRegistry;
+        this.payloadCodec = payloadCodec;
+    }
+
+    /**
+     * @param subject The subject
+     * @param type    The type of the message bodies
+     * @param <T>     The type of the message bodies
+     * @return the messages of the subject, from new messages only
+     */
+    public <T> Publisher<T> subscribe(String subject, Class<T> type) {
+        return subscribe(subject, Argument.of(type), null);
+    }
+
+    /**
+     * @param subject The subject
+     * @param type    The type of the message bodies
+     * @param options The subscription options, null for the defaults. The acks are always manual and the max in
+     *                flight, lowered to the first request, bounds the messages buffered ahead of the demand
+     * @param <T>     The type of the message bodies
+     * @return the messages of the subject
+     */
+    public <T> Publisher<T> subscribe(String subject, Argument<T> type, @Nullable SubscriptionOptions options) {
+        return subscribe(null, subject, type, options);
+    }
+
+    /**
+     * @param connectionName The connection name, null for the default connection
+     * @param subject        The subject
+     * @param type           The type of the message bodies
+     * @param options        The subscription options, null for the defaults. The acks are always manual and the
+     *                       max in flight, lowered to the first request, bounds the messages buffered ahead of the
+     *                       demand
+     * @param <T>            The type of the message bodies
+     * @return the messages of the subject
+     * @throws NatsStreamingClientException if no serdes supports the type
+     */
+    public <T> Publisher<T> subscribe(@Nullable String connectionName, String subject, Argument<T> type,
+                                      @Nullable SubscriptionOptions options) {
+        final NatsMessageSerDes<T> serDes = serDesRegistry.findSerdes(type)
+                .orElseThrow(() -> new NatsStreamingClientException(
+                        "No serdes found to deserialize the type [" + type.getName() + "]"));
+        final boolean durable = options != null && options.getDurableName() != null;
+        return new NatsSubjectPublisher<>(() -> connections.get(connectionName, subject, durable), subject,
+                NatsSubjectPublisher.withManualAcks(options), msg -> serDes.deserialize(payloadCodec.decode(msg), type));
+    }
+}
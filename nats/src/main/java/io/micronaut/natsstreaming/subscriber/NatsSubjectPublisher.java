@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.subscriber;
+
+import io.nats.streaming.Message;
+import io.nats.streaming.MessageHandler;
+import io.nats.streaming.StreamingConnection;
+import io.nats.streaming.SubscriptionOptions;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A subject as a cold {@link Publisher}: every subscriber opens its own nats subscription on its first request,
+ * closed on cancel. The server sends at most the max in flight messages without an ack; they wait in a queue until
+ * requested, and are acked once emitted. The max in flight is lowered to the first request, so a subscriber
+ * requesting a few messages at a time only buffers as many, while an unbounded request keeps the configured max in
+ * flight.
+ *
+ * @param <T> The type of the message bodies
+ * @author alisson
+ */
+final class NatsSubjectPublisher<T> implements Publisher<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NatsSubjectPublisher.class);
+
+    private final Supplier<StreamingConnection> connection;
+
+    private final String subject;
+
+    private final SubscriptionOptions options;
+
+    private final Function<Message, T> deserializer;
+
+    /**
+     * @param connection   Supplies the connection to subscribe on
+     * @param subject      The subject
+     * @param options      The subscription options, with manual acks
+     * @param deserializer Deserializes the message bodies
+     */
+    NatsSubjectPublisher(Supplier<StreamingConnection> connection, String subject, SubscriptionOptions options,
+                         Function<Message, T> deserializer) {
+        this.connection = connection;
+        this.subject = subject;
+        this.options = options;
+        this.deserializer = deserializer;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        subscriber.onSubscribe(new SubjectSubscription(subscriber));
+    }
+
+    /**
+     * Copies the options, switching to manual acks.
+     *
+     * @param options The options, null for the defaults
+     * @return the options with manual acks
+     */
+    static SubscriptionOptions withManualAcks(@Nullable SubscriptionOptions options) {
+        if (options == null) {
+            return new SubscriptionOptions.Builder().manualAcks().build();
+        }
+        if (options.isManualAcks()) {
+            return options;
+        }
+        return copy(options, options.getMaxInFlight());
+    }
+
+    /**
+     * Copies the options with manual acks and another max in flight.
+     *
+     * @param options     The options
+     * @param maxInFlight The max in flight
+     * @return the copied options
+     */
+    static SubscriptionOptions copy(SubscriptionOptions options, int maxInFlight) {
+        final SubscriptionOptions.Builder builder = new SubscriptionOptions.Builder()
+                .durableName(options.getDurableName())
+                .maxInFlight(maxInFlight)
+                .ackWait(options.getAckWait())
+                .manualAcks();
+        switch (options.getStartAt()) {
+            case First:
+                builder.deliverAllAvailable();
+                break;
+            case LastReceived:
+                builder.startWithLastReceived();
+                break;
+            case SequenceStart:
+                builder.startAtSequence(options.getStartSequence());
+                break;
+            case TimeDeltaStart:
+                builder.startAtTime(options.getStartTime());
+                break;
+            default:
+                break;
+        }
+        return builder.build();
+    }
+
+    /**
+     * The nats subscription of a subscriber, emitting the received messages as requested.
+     */
+    private final class SubjectSubscription implements Subscription, MessageHandler {
+
+        private final Subscriber<? super T> subscriber;
+
+        private final Queue<Message> received = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private volatile io.nats.streaming.Subscription subscription;
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable error;
+
+        /**
+         * @param subscriber The subscriber
+         */
+        private SubjectSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onMessage(Message msg) {
+            received.add(msg);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The requested amount must be positive, got " + n);
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                if (started.compareAndSet(false, true)) {
+                    start(n);
+                    return;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        /**
+         * Opens the nats subscription, with a max in flight lowered to the first request.
+         *
+         * @param requested The first request
+         */
+        private void start(long requested) {
+            if (cancelled) {
+                return;
+            }
+            final SubscriptionOptions opened = requested < options.getMaxInFlight()
+                    ? copy(options, (int) requested) : options;
+            try {
+                final io.nats.streaming.Subscription subscribed = connection.get().subscribe(subject, this, opened);
+                subscription = subscribed;
+                if (cancelled) {
+                    close(subscribed);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+            } catch (Exception e) {
+                error = e;
+            }
+            drain();
+        }
+
+        /**
+         * Emits the received messages within the demand, from a single thread at a time.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                final long requested = demand.get();
+                long emitted = 0;
+                while (!isTerminated()) {
+                    if (emitted == requested) {
+                        break;
+                    }
+                    final Message msg = received.poll();
+                    if (msg == null) {
+                        break;
+                    }
+                    if (emit(msg)) {
+                        emitted++;
+                    }
+                }
+                if (isTerminated()) {
+                    terminate();
+                    return;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * @param msg The message
+         * @return true if a value was emitted, false for an empty body acked and skipped
+         */
+        private boolean emit(Message msg) {
+            final T value;
+            try {
+                value = deserializer.apply(msg);
+            } catch (RuntimeException e) {
+                error = e;
+                return false;
+            }
+            if (value != null) {
+                subscriber.onNext(value);
+            }
+            try {
+                msg.ack();
+            } catch (IOException e) {
+                LOG.warn("Fail to ack the message {} of [{}], it will be redelivered", msg.getSequence(), subject, e);
+            }
+            return value != null;
+        }
+
+        /**
+         * @return true once cancelled or failed
+         */
+        private boolean isTerminated() {
+            return cancelled || error != null;
+        }
+
+        /**
+         * Closes the nats subscription, keeping a durable one, and signals the error unless cancelled.
+         */
+        private void terminate() {
+            received.clear();
+            final io.nats.streaming.Subscription current = subscription;
+            subscription = null;
+            if (current != null) {
+                close(current);
+            }
+            if (!cancelled) {
+                cancelled = true;
+                subscriber.onError(error);
+            }
+        }
+
+        /**
+         * Closes a nats subscription, keeping a durable one.
+         *
+         * @param closed The subscription
+         */
+        private void close(io.nats.streaming.Subscription closed) {
+            try {
+                closed.close();
+            } catch (Exception e) {
+                LOG.debug("Fail to close the subscription of [{}]", subject, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.compression
+
+import io.micronaut.core.serialize.exceptions.SerializationException
+import io.nats.streaming.Message
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class NatsPayloadCodecSpec extends Specification {
+
+    static final byte[] BODY = ("order-" * 1000).getBytes(StandardCharsets.UTF_8)
+
+    @Unroll
+    void "a #algorithm body above the threshold is compressed and decoded back"() {
+        given:
+        NatsPayloadCodec codec = codec(algorithm)
+
+        when:
+        byte[] encoded = codec.encode(BODY)
+
+        then:
+        codec.isEncoded(encoded)
+        encoded.length < BODY.length
+        encoded[4] == algorithm.id
+        codec.decode(encoded) == BODY
+
+        where:
+        algorithm << CompressionAlgorithm.values()
+    }
+
+    void "a body below the threshold is published as is"() {
+        given:
+        byte[] body = "small".getBytes(StandardCharsets.UTF_8)
+
+        expect:
+        codec(CompressionAlgorithm.LZ4).encode(body).is(body)
+    }
+
+    void "a disabled codec neither compresses nor decodes"() {
+        given:
+        NatsPayloadCodec codec = new NatsPayloadCodec(new NatsCompressionConfig())
+        byte[] encoded = codec(CompressionAlgorithm.LZ4).encode(BODY)
+
+        expect:
+        !codec.enabled
+        codec.encode(BODY).is(BODY)
+        codec.decode(encoded).is(encoded)
+    }
+
+    void "a received message exposes the decoded body"() {
+        given:
+        NatsPayloadCodec codec = codec(CompressionAlgorithm.ZSTD)
+        Message message = message(codec.encode(BODY))
+        Message plain = message(BODY)
+
+        when:
+        Message decoded = codec.decode(message)
+
+        then:
+        decoded instanceof DecodedMessage
+        decoded.data == BODY
+        decoded.sequence == 7L
+        codec.decode(plain).is(plain)
+    }
+
+    @Unroll
+    void "a #algorithm envelope that #corruption is rejected"() {
+        given:
+        NatsPayloadCodec codec = codec(algorithm)
+        byte[] encoded = codec.encode(BODY)
+
+        when:
+        codec.decode(corrupt(encoded))
+
+        then:
+        thrown(SerializationException)
+
+        where:
+        [algorithm, corruption, corrupt] << [
+                CompressionAlgorithm.values().toList(),
+                [
+                        ["has an unknown algorithm", { byte[] data -> data[4] = (byte) 9; data }],
+                        ["declares a length below its own", { byte[] data -> length(data, 1) }],
+                        ["declares a length above its body", { byte[] data -> length(data, BODY.length + 1) }],
+                        ["declares a length below its body", { byte[] data -> length(data, BODY.length - 1) }],
+                        ["declares the maximum length", { byte[] data -> length(data, 0xFFFFFF) }],
+                        ["is truncated", { byte[] data -> Arrays.copyOf(data, data.length - 8) }]
+                ]
+        ].combinations().collect { it.flatten() }
+    }
+
+    private static NatsPayloadCodec codec(CompressionAlgorithm algorithm) {
+        NatsCompressionConfig config = new NatsCompressionConfig()
+        config.enabled = true
+        config.algorithm = algorithm
+        new NatsPayloadCodec(config)
+    }
+
+    private static byte[] length(byte[] data, int length) {
+        data[5] = (byte) (length >>> 16)
+        data[6] = (byte) (length >>> 8)
+        data[7] = (byte) length
+        data
+    }
+
+    private static Message message(byte[] data) {
+        new Message() {
+            @Override
+            byte[] getData() {
+                data
+            }
+
+            @Override
+            long getSequence() {
+                7L
+            }
+        }
+    }
+}
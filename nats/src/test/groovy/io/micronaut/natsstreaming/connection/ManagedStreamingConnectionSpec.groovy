@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection
+
+import io.micronaut.natsstreaming.connection.embedded.EmbeddedStreamingConnection
+import io.nats.streaming.AckHandler
+import io.nats.streaming.ConnectionLostHandler
+import io.nats.streaming.Message
+import io.nats.streaming.MessageHandler
+import io.nats.streaming.StreamingConnection
+import io.nats.streaming.Subscription
+import io.nats.streaming.SubscriptionOptions
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Consumer
+
+class ManagedStreamingConnectionSpec extends Specification {
+
+    StubConnector connector = new StubConnector()
+
+    @AutoCleanup
+    ManagedStreamingConnection connection = new ManagedStreamingConnection('spec', connector, config(),
+            'spec-client', 16, { it.run() } as Executor)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "a failed subscription is reported and retried until it is created"() {
+        given:
+        List<Exception> failures = new CopyOnWriteArrayList<>()
+        List<String> received = new CopyOnWriteArrayList<>()
+        connector.subscribeFailures.set(2)
+        connection.connectNow()
+
+        when:
+        connection.subscribe('orders', null, { Message msg -> received << text(msg) } as MessageHandler,
+                new SubscriptionOptions.Builder().deliverAllAvailable().build(),
+                { Exception e -> failures << e } as Consumer<Exception>)
+
+        then:
+        failures.size() == 1
+        connection.connected
+        connection.pendingSubscriptions == 1
+
+        when:
+        connection.publish('orders', bytes('created'))
+
+        then:
+        conditions.eventually {
+            assert failures.size() == 2
+            assert connection.pendingSubscriptions == 0
+            assert received == ['created']
+        }
+        failures.every { it instanceof IOException }
+    }
+
+    void "a failed subscription is not retried once the connection is closed"() {
+        given:
+        List<Exception> failures = new CopyOnWriteArrayList<>()
+        connector.subscribeFailures.set(Integer.MAX_VALUE)
+        connection.connectNow()
+        connection.subscribe('orders', null, {} as MessageHandler, null,
+                { Exception e -> failures << e } as Consumer<Exception>)
+
+        when:
+        connection.close()
+        Thread.sleep(500)
+
+        then:
+        failures.size() == 1
+    }
+
+    void "a lost connection is rebuilt, resubscribing and sending the publishes buffered meanwhile"() {
+        given:
+        List<String> received = new CopyOnWriteArrayList<>()
+        List<String> acked = new CopyOnWriteArrayList<>()
+        connection.connectNow()
+        connection.subscribe('orders', { Message msg -> received << text(msg) } as MessageHandler,
+                new SubscriptionOptions.Builder().deliverAllAvailable().build())
+        connection.publish('orders', bytes('before'))
+        conditions.eventually {
+            assert received == ['before']
+        }
+        connector.reconnect = new CountDownLatch(1)
+
+        when:
+        connector.lose(0)
+
+        then:
+        !connection.connected
+        connection.pendingSubscriptions == 1
+
+        when:
+        String guid = connection.publish('orders', bytes('buffered'), { String id, Exception e ->
+            if (e == null) {
+                acked << id
+            }
+        } as AckHandler)
+
+        then:
+        guid == null
+        connection.bufferedPublishes == 1
+
+        when:
+        connection.publish('orders', bytes('failed'))
+
+        then:
+        thrown(IOException)
+
+        when:
+        connector.reconnect.countDown()
+
+        then:
+        conditions.eventually {
+            assert connection.connected
+            assert connection.pendingSubscriptions == 0
+            assert connection.bufferedPublishes == 0
+            assert received == ['before', 'buffered']
+            assert acked.size() == 1
+        }
+        connector.connections.size() == 2
+    }
+
+    private static NatsStreamingConnectionConfig config() {
+        NatsStreamingConnectionConfig config = new NatsStreamingConnectionConfig()
+        config.connectRetryDelay = Duration.ofMillis(100)
+        config.maxConnectRetryDelay = Duration.ofMillis(200)
+        config
+    }
+
+    private static byte[] bytes(String text) {
+        text.getBytes(StandardCharsets.UTF_8)
+    }
+
+    private static String text(Message msg) {
+        new String(msg.data, StandardCharsets.UTF_8)
+    }
+
+    /**
+     * Connects to in-memory connections refusing the given number of subscriptions, reconnects waiting for the
+     * reconnect latch when set.
+     */
+    static class StubConnector extends NatsStreamingConnector {
+
+        final AtomicInteger subscribeFailures = new AtomicInteger()
+
+        final List<StreamingConnection> connections = new CopyOnWriteArrayList<>()
+
+        final List<ConnectionLostHandler> lostHandlers = new CopyOnWriteArrayList<>()
+
+        volatile CountDownLatch reconnect
+
+        StubConnector() {
+            super({ it.run() } as Executor)
+        }
+
+        @Override
+        StreamingConnection connect(AbstractNatsStreamingConnectionConfig config, String clientId,
+                                    ConnectionLostHandler connectionLostHandler) {
+            if (reconnect != null && !connections.empty) {
+                reconnect.await()
+            }
+            StreamingConnection connection = new FailingConnection(subscribeFailures)
+            connections << connection
+            lostHandlers << connectionLostHandler
+            connection
+        }
+
+        void lose(int index) {
+            lostHandlers[index].connectionLost(connections[index], new IOException('The connection was lost'))
+        }
+    }
+
+    /**
+     * Fails the subscriptions while failures are left.
+     */
+    static class FailingConnection extends EmbeddedStreamingConnection {
+
+        final AtomicInteger failures
+
+        FailingConnection(AtomicInteger failures) {
+            this.failures = failures
+        }
+
+        @Override
+        synchronized Subscription subscribe(String subject, String queue, MessageHandler cb,
+                                            SubscriptionOptions opts) throws IOException {
+            if (failures.getAndUpdate { it > 0 ? it - 1 : 0 } > 0) {
+                throw new IOException('The subscription was refused')
+            }
+            super.subscribe(subject, queue, cb, opts)
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection
+
+import io.micronaut.context.ApplicationContext
+import io.micronaut.inject.qualifiers.Qualifiers
+import io.nats.streaming.StreamingConnection
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class NatsStreamingConnectionPoolSpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsStreamingConnectionPoolSpec',
+            'nats.client-id': 'pool-spec',
+            'nats.async-connect': true,
+            'nats.connect-retry-delay': '1m',
+            'nats.pool-size': 3,
+            'nats.connections.orders.client-id': 'orders-spec',
+            'nats.connections.orders.async-connect': true,
+            'nats.connections.orders.connect-retry-delay': '1m')
+
+    @Shared
+    NatsStreamingConnections connections = context.getBean(NatsStreamingConnections)
+
+    void "the pooled connections use the client id of the default connection followed by their index"() {
+        given:
+        NatsStreamingConnectionPool pool = context.getBean(NatsStreamingConnectionPool)
+
+        expect:
+        pool.size() == 3
+        pool.connections.collect { ((ManagedStreamingConnection) it).clientId } ==
+                ['pool-spec-0', 'pool-spec-1', 'pool-spec-2']
+        pool.connections.collect { ((ManagedStreamingConnection) it).name } == ['pool-0', 'pool-1', 'pool-2']
+        ((ManagedStreamingConnection) context.getBean(StreamingConnection)).clientId == 'pool-spec'
+    }
+
+    @Unroll
+    void "the subject #subject always maps to the same pooled connection"() {
+        given:
+        NatsStreamingConnectionPool pool = context.getBean(NatsStreamingConnectionPool)
+
+        when:
+        StreamingConnection connection = connections.get(null, subject)
+
+        then:
+        pool.connections.any { it.is(connection) }
+        connections.get(null, subject).is(connection)
+        connections.get('default', subject).is(connection)
+        pool.select(subject).is(connection)
+
+        where:
+        subject << ['orders', 'payments', 'orders.created', 'a']
+    }
+
+    void "a durable subscription outside a queue group keeps the default client id"() {
+        when:
+        StreamingConnection connection = connections.get(null, 'orders', true)
+
+        then:
+        connection.is(context.getBean(StreamingConnection))
+        ((ManagedStreamingConnection) connection).clientId == 'pool-spec'
+        !context.getBean(NatsStreamingConnectionPool).connections.any { it.is(connection) }
+    }
+
+    void "a named connection is used whatever the pool"() {
+        given:
+        StreamingConnection named = context.getBean(StreamingConnection, Qualifiers.byName('orders'))
+
+        expect:
+        connections.get('orders', 'orders').is(named)
+        connections.get('orders', 'orders', true).is(named)
+        ((ManagedStreamingConnection) named).clientId == 'orders-spec'
+        ((ManagedStreamingConnection) named).name == 'orders'
+    }
+
+    @Unroll
+    void "a pool size of #poolSize disables the pool"() {
+        given:
+        Map<String, Object> properties = [
+                'spec.name'               : 'NatsStreamingConnectionPoolSpec',
+                'nats.client-id'          : 'no-pool-spec',
+                'nats.async-connect'      : true,
+                'nats.connect-retry-delay': '1m']
+        if (poolSize != null) {
+            properties['nats.pool-size'] = poolSize
+        }
+        ApplicationContext disabled = ApplicationContext.run(properties)
+
+        expect:
+        !disabled.containsBean(NatsStreamingConnectionPool)
+        disabled.getBean(NatsStreamingConnections).get(null, 'orders').is(disabled.getBean(StreamingConnection))
+
+        cleanup:
+        disabled.close()
+
+        where:
+        poolSize << [0, null]
+    }
+}
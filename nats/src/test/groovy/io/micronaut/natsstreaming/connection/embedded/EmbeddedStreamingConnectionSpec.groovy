@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.connection.embedded
+
+import io.nats.streaming.AckHandler
+import io.nats.streaming.Message
+import io.nats.streaming.MessageHandler
+import io.nats.streaming.Subscription
+import io.nats.streaming.SubscriptionOptions
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class EmbeddedStreamingConnectionSpec extends Specification {
+
+    @AutoCleanup
+    EmbeddedStreamingConnection connection = new EmbeddedStreamingConnection()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "the published messages are delivered in order to a subscriber"() {
+        given:
+        List<Message> received = new CopyOnWriteArrayList<>()
+        connection.subscribe("orders", { Message msg -> received.add(msg) } as MessageHandler)
+
+        when:
+        ["a", "b", "c"].each { connection.publish("orders", bytes(it)) }
+
+        then:
+        conditions.eventually {
+            assert received.collect { text(it) } == ["a", "b", "c"]
+        }
+        received*.subject == ["orders"] * 3
+        received*.sequence == received*.sequence.sort()
+        received*.sequence.unique().size() == 3
+        received.every { !it.redelivered }
+    }
+
+    void "a publish with an ack handler is acked with its guid"() {
+        given:
+        List<String> acked = new CopyOnWriteArrayList<>()
+        List<Exception> failures = new CopyOnWriteArrayList<>()
+        AckHandler handler = new AckHandler() {
+            @Override
+            void onAck(String guid, Exception ex) {
+                acked.add(guid)
+                if (ex != null) {
+                    failures.add(ex)
+                }
+            }
+        }
+
+        when:
+        String guid = connection.publish("orders", bytes("a"), handler)
+
+        then:
+        guid
+        acked == [guid]
+        failures.isEmpty()
+    }
+
+    void "a message that is not acked is redelivered after the ack wait"() {
+        given:
+        List<String> received = new CopyOnWriteArrayList<>()
+        SubscriptionOptions options = new SubscriptionOptions.Builder()
+                .manualAcks()
+                .ackWait(Duration.ofMillis(100))
+                .build()
+        connection.subscribe("orders", { Message msg ->
+            received.add(text(msg) + (msg.redelivered ? "-redelivered" : ""))
+            if (msg.redelivered) {
+                msg.ack()
+            }
+        } as MessageHandler, options)
+
+        when:
+        connection.publish("orders", bytes("a"))
+
+        then:
+        conditions.eventually {
+            assert received == ["a", "a-redelivered"]
+        }
+
+        when:
+        Thread.sleep(300)
+
+        then:
+        received == ["a", "a-redelivered"]
+    }
+
+    void "the members of a queue group share the messages"() {
+        given:
+        List<String> first = new CopyOnWriteArrayList<>()
+        List<String> second = new CopyOnWriteArrayList<>()
+        connection.subscribe("orders", "workers", { Message msg -> first.add(text(msg)) } as MessageHandler)
+        connection.subscribe("orders", "workers", { Message msg -> second.add(text(msg)) } as MessageHandler)
+
+        when:
+        (1..10).each { connection.publish("orders", bytes("$it")) }
+
+        then:
+        conditions.eventually {
+            assert first.size() + second.size() == 10
+        }
+        !first.isEmpty()
+        !second.isEmpty()
+        (first + second).toSet() == (1..10).collect { "$it".toString() }.toSet()
+    }
+
+    void "a durable subscription resumes after the last acked message"() {
+        given:
+        List<String> received = new CopyOnWriteArrayList<>()
+        SubscriptionOptions options = new SubscriptionOptions.Builder()
+                .durableName("durable")
+                .manualAcks()
+                .build()
+        MessageHandler handler = { Message msg ->
+            received.add(text(msg))
+            msg.ack()
+        } as MessageHandler
+        Subscription subscription = connection.subscribe("orders", handler, options)
+        connection.publish("orders", bytes("1"))
+        conditions.eventually {
+            assert received == ["1"]
+        }
+
+        when:
+        subscription.close(false)
+        connection.publish("orders", bytes("2"))
+        connection.subscribe("orders", handler, options)
+
+        then:
+        conditions.eventually {
+            assert received == ["1", "2"]
+        }
+    }
+
+    void "a subscription can start with the messages published before it"() {
+        given:
+        List<String> received = new CopyOnWriteArrayList<>()
+        ["a", "b"].each { connection.publish("orders", bytes(it)) }
+
+        when:
+        connection.subscribe("orders", { Message msg -> received.add(text(msg)) } as MessageHandler,
+                new SubscriptionOptions.Builder().deliverAllAvailable().build())
+
+        then:
+        conditions.eventually {
+            assert received == ["a", "b"]
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        text.getBytes(StandardCharsets.UTF_8)
+    }
+
+    private static String text(Message message) {
+        new String(message.data, StandardCharsets.UTF_8)
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import io.nats.streaming.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Consumer
+
+class NatsAckCoalescerSpec extends Specification {
+
+    @AutoCleanup
+    NatsAckCoalescer coalescer = new NatsAckCoalescer(new NatsAckConfig())
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "every ack reports its own outcome to its callback"() {
+        given:
+        IOException failure = new IOException("The ack was refused")
+        Map<Long, Optional<IOException>> outcomes = new ConcurrentHashMap<>()
+
+        when:
+        (1L..3L).each { sequence ->
+            coalescer.ack(message(sequence, sequence == 2L ? failure : null),
+                    { IOException error -> outcomes.put(sequence, Optional.ofNullable(error)) } as Consumer<IOException>)
+        }
+
+        then:
+        conditions.eventually {
+            assert outcomes.size() == 3
+        }
+        outcomes[1L] == Optional.empty()
+        outcomes[2L].get().is(failure)
+        outcomes[3L] == Optional.empty()
+    }
+
+    void "a failing callback does not stop the acks queued behind it"() {
+        given:
+        List<Long> acked = [].asSynchronized()
+
+        when:
+        coalescer.ack(message(1L, null), { IOException error -> throw new IllegalStateException("Broken callback") }
+                as Consumer<IOException>)
+        coalescer.ack(message(2L, null), { IOException error -> acked.add(2L) } as Consumer<IOException>)
+
+        then:
+        conditions.eventually {
+            assert acked == [2L]
+        }
+    }
+
+    void "the queued acks are sent on close"() {
+        given:
+        List<Long> acked = [].asSynchronized()
+
+        when:
+        (1L..10L).each { sequence ->
+            coalescer.ack(message(sequence, null), { IOException error -> acked.add(sequence) } as Consumer<IOException>)
+        }
+        coalescer.close()
+
+        then:
+        acked.sort() == (1L..10L).toList()
+        coalescer.pending == 0
+    }
+
+    private static Message message(long sequence, IOException failure) {
+        new Message() {
+            @Override
+            long getSequence() {
+                sequence
+            }
+
+            @Override
+            void ack() throws IOException {
+                if (failure != null) {
+                    throw failure
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Requires
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerException
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerExceptionHandler
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class NatsBatchListenerSpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsBatchListenerSpec',
+            'nats.embedded.enabled': true)
+
+    void "a batch flushed by its timeout reports the listener failure to the exception handler"() {
+        given:
+        FailingBatchListener listener = context.getBean(FailingBatchListener)
+        NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+
+        when:
+        publisher.publish("batch-spec", "first")
+        publisher.publish("batch-spec", "second")
+
+        then:
+        conditions.eventually {
+            assert listener.errors.size() == 1
+        }
+        listener.batches == [["first", "second"]]
+        listener.errors[0].cause instanceof IllegalStateException
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsBatchListenerSpec')
+    @NatsStreamingListener
+    static class FailingBatchListener implements NatsStreamingListenerExceptionHandler {
+
+        final List<List<String>> batches = new CopyOnWriteArrayList<>()
+
+        final List<NatsStreamingListenerException> errors = new CopyOnWriteArrayList<>()
+
+        @Subject(value = "batch-spec", batchSize = 10, batchTimeout = "100ms")
+        void receive(List<String> bodies) {
+            batches.add(new ArrayList<>(bodies))
+            throw new IllegalStateException("batch failure")
+        }
+
+        @Override
+        void handle(NatsStreamingListenerException exception) {
+            errors.add(exception)
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import spock.lang.Specification
+
+import java.time.Duration
+
+class NatsDeduplicationCacheSpec extends Specification {
+
+    void "a key is found once added and not before"() {
+        given:
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(16, Duration.ofNanos(100))
+
+        expect:
+        !cache.contains(1L, 0)
+
+        when:
+        cache.add(1L, 0)
+
+        then:
+        cache.contains(1L, 50)
+        !cache.contains(2L, 50)
+        cache.size() == 1
+    }
+
+    void "a key expires after its time to live and is evicted by the next add"() {
+        given:
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(16, Duration.ofNanos(10))
+        cache.add(1L, 0)
+
+        expect:
+        cache.contains(1L, 9)
+        !cache.contains(1L, 10)
+
+        when:
+        cache.add(2L, 20)
+
+        then:
+        cache.size() == 1
+        !cache.contains(1L, 20)
+        cache.contains(2L, 20)
+    }
+
+    void "the oldest key is evicted once the cache is full"() {
+        given:
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(3, Duration.ofSeconds(1))
+
+        when:
+        (1L..4L).each { cache.add(it, 0) }
+
+        then:
+        cache.size() == 3
+        !cache.contains(1L, 0)
+        (2L..4L).every { cache.contains(it, 0) }
+    }
+
+    void "the ring wraps around and keeps the last keys"() {
+        given:
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(4, Duration.ofSeconds(1))
+
+        when:
+        (1L..10L).each { cache.add(it, it) }
+
+        then:
+        cache.size() == 4
+        (1L..6L).every { !cache.contains(it, 10) }
+        (7L..10L).every { cache.contains(it, 10) }
+    }
+
+    void "a renewed key survives the eviction of its previous entry"() {
+        given:
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(16, Duration.ofNanos(10))
+        cache.add(1L, 0)
+        cache.add(2L, 1)
+        cache.add(1L, 5)
+
+        when:
+        cache.add(3L, 12)
+
+        then:
+        cache.contains(1L, 12)
+        !cache.contains(2L, 12)
+        cache.contains(3L, 12)
+    }
+
+    void "evicting a key keeps the colliding keys of its probe sequence"() {
+        given: "keys sharing the same home slot of the 8 slots table"
+        NatsDeduplicationCache cache = new NatsDeduplicationCache(4, Duration.ofSeconds(1))
+        [1L, 9L, 17L, 25L].each { cache.add(it, 0) }
+
+        when:
+        cache.add(33L, 0)
+
+        then:
+        !cache.contains(1L, 0)
+        [9L, 17L, 25L, 33L].every { cache.contains(it, 0) }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Bean
+import io.micronaut.context.annotation.Factory
+import io.micronaut.context.annotation.Requires
+import io.micronaut.messaging.annotation.Body
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerException
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerExceptionHandler
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.inject.Named
+import javax.inject.Singleton
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+
+class NatsListenerExecutorSpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsListenerExecutorSpec',
+            'nats.embedded.enabled': true)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "an invocation rejected by the listener executor is handed to the exception handler"() {
+        given:
+        RejectedListener listener = context.getBean(RejectedListener)
+        NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+
+        when:
+        publisher.publishRawAsync("rejected-executor-spec", "first".getBytes(StandardCharsets.UTF_8)).get()
+        publisher.publishRawAsync("rejected-executor-spec", "second".getBytes(StandardCharsets.UTF_8)).get()
+
+        then: "every message is reported and the dispatcher keeps delivering"
+        conditions.eventually {
+            assert listener.errors.size() == 2
+        }
+        listener.errors.every { it.cause instanceof RejectedExecutionException }
+        listener.errors.collect { new String(it.messageState.get().data, StandardCharsets.UTF_8) } ==
+                ["first", "second"]
+        listener.received.empty
+    }
+
+    @Factory
+    @Requires(property = 'spec.name', value = 'NatsListenerExecutorSpec')
+    static class RejectingExecutorFactory {
+
+        @Singleton
+        @Named("rejecting")
+        @Bean(preDestroy = "shutdown")
+        ExecutorService rejectingExecutor() {
+            ExecutorService executor = Executors.newSingleThreadExecutor()
+            executor.shutdown()
+            executor
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsListenerExecutorSpec')
+    @NatsStreamingListener(executor = "rejecting")
+    static class RejectedListener implements NatsStreamingListenerExceptionHandler {
+
+        final List<String> received = new CopyOnWriteArrayList<>()
+
+        final List<NatsStreamingListenerException> errors = new CopyOnWriteArrayList<>()
+
+        @Subject("rejected-executor-spec")
+        void receive(@Body String body) {
+            received.add(body)
+        }
+
+        @Override
+        void handle(NatsStreamingListenerException exception) {
+            errors.add(exception)
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import groovy.json.JsonSlurper
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Requires
+import io.micronaut.messaging.annotation.Body
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher
+import io.nats.streaming.Message
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.inject.Singleton
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+
+class NatsListenerRetrySpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsListenerRetrySpec',
+            'nats.embedded.enabled': true)
+
+    void "a failing message holds its lane through its retries until it is dead lettered"() {
+        given:
+        OrderedListener listener = context.getBean(OrderedListener)
+        DeadLetterListener deadLetters = context.getBean(DeadLetterListener)
+        NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+
+        when:
+        publisher.publish("retry-spec", "poison")
+        publisher.publish("retry-spec", "first")
+        publisher.publish("retry-spec", "second")
+
+        then:
+        conditions.eventually {
+            assert listener.received == ["poison", "poison", "poison", "first", "second"]
+            assert deadLetters.envelopes.size() == 1
+        }
+
+        and:
+        Map envelope = deadLetters.envelopes.first()
+        envelope.subject == "retry-spec"
+        envelope.attempts == 3
+        envelope.exception == IllegalStateException.name
+        new String(envelope.payload.toString().decodeBase64(), StandardCharsets.UTF_8) == "poison"
+    }
+
+    @Singleton
+    @Requires(property = 'spec.name', value = 'NatsListenerRetrySpec')
+    static class SameLaneKeyExtractor implements NatsMessageKeyExtractor {
+
+        @Override
+        Object extractKey(Message message) {
+            "same-lane"
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsListenerRetrySpec')
+    @NatsStreamingListener(enableAck = true, lanes = 2, keyExtractor = SameLaneKeyExtractor, maxRetries = 2,
+            retryDelay = "10ms", deadLetterSubject = "retry-spec-dlq")
+    static class OrderedListener {
+
+        final List<String> received = new CopyOnWriteArrayList<>()
+
+        @Subject("retry-spec")
+        void receive(@Body String body) {
+            received.add(body)
+            if (body == "poison") {
+                throw new IllegalStateException("poison message")
+            }
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsListenerRetrySpec')
+    @NatsStreamingListener
+    static class DeadLetterListener {
+
+        final List<Map> envelopes = new CopyOnWriteArrayList<>()
+
+        @Subject("retry-spec-dlq")
+        void receive(@Body byte[] envelope) {
+            envelopes.add((Map) new JsonSlurper().parse(envelope))
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import io.micronaut.scheduling.ScheduledExecutorTaskScheduler
+import io.nats.streaming.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Consumer
+
+class NatsMessageBatcherSpec extends Specification {
+
+    @AutoCleanup("shutdownNow")
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    List<List<Message>> batches = new CopyOnWriteArrayList<>()
+
+    void "a batch is flushed as soon as it is full"() {
+        given:
+        NatsMessageBatcher batcher = batcher(3, Duration.ofSeconds(30))
+        List<Message> messages = (1..4).collect { message(it) }
+
+        when:
+        messages.take(3).each { batcher.add(it) }
+
+        then:
+        batches == [messages.take(3)]
+
+        when:
+        batcher.add(messages[3])
+
+        then:
+        batches.size() == 1
+    }
+
+    void "a batch that is not full is flushed once its timeout expires"() {
+        given:
+        NatsMessageBatcher batcher = batcher(10, Duration.ofMillis(50))
+        List<Message> messages = (1..3).collect { message(it) }
+
+        when:
+        messages.take(2).each { batcher.add(it) }
+
+        then:
+        conditions.eventually {
+            assert batches == [messages.take(2)]
+        }
+
+        when: "the next message starts a new batch with its own timeout"
+        batcher.add(messages[2])
+
+        then:
+        conditions.eventually {
+            assert batches == [messages.take(2), [messages[2]]]
+        }
+    }
+
+    void "a full batch is not flushed again by its timeout"() {
+        given:
+        NatsMessageBatcher batcher = batcher(2, Duration.ofMillis(20))
+
+        when:
+        batcher.add(message(1))
+        batcher.add(message(2))
+        Thread.sleep(200)
+
+        then:
+        batches.size() == 1
+        batches[0]*.sequence == [1L, 2L]
+    }
+
+    void "the batches are handed over one at a time and in order"() {
+        given: "a slow handler and timeouts expiring while batches are filled"
+        AtomicInteger running = new AtomicInteger()
+        AtomicInteger maxRunning = new AtomicInteger()
+        NatsMessageBatcher batcher = batcher(3, Duration.ofMillis(1), { List<Message> batch ->
+            int now = running.incrementAndGet()
+            maxRunning.updateAndGet { Math.max(it, now) }
+            Thread.sleep(2)
+            batches.add(batch)
+            running.decrementAndGet()
+        })
+
+        when:
+        (1..200).each { batcher.add(message(it)) }
+
+        then:
+        conditions.eventually {
+            assert batches.sum { it.size() } == 200
+        }
+        maxRunning.get() == 1
+        batches.collectMany { it*.sequence } == (1L..200L).toList()
+    }
+
+    private NatsMessageBatcher batcher(int batchSize, Duration timeout) {
+        batcher(batchSize, timeout, { List<Message> batch -> batches.add(batch) })
+    }
+
+    private NatsMessageBatcher batcher(int batchSize, Duration timeout, Consumer<List<Message>> handler) {
+        new NatsMessageBatcher(batchSize, timeout, new ScheduledExecutorTaskScheduler(executor), new Object(), handler)
+    }
+
+    private static Message message(long sequence) {
+        new Message() {
+            @Override
+            long getSequence() {
+                sequence
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import io.micronaut.core.serialize.exceptions.SerializationException
+import io.nats.streaming.Message
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Duration
+
+class NatsMessageDeduplicatorSpec extends Specification {
+
+    void "a message is a duplicate once its id was processed"() {
+        given:
+        NatsMessageDeduplicator deduplicator = deduplicator({ Message msg -> msg.sequence % 2 } as NatsMessageKeyExtractor)
+        long key = deduplicator.keyOf(message(1L))
+
+        expect:
+        key != NatsMessageDeduplicator.NO_KEY
+        !deduplicator.isDuplicate(key)
+
+        when:
+        deduplicator.processed(key)
+
+        then:
+        deduplicator.isDuplicate(deduplicator.keyOf(message(3L)))
+        !deduplicator.isDuplicate(deduplicator.keyOf(message(2L)))
+    }
+
+    @Unroll
+    void "a message whose id fails with #error.class.simpleName is never deduplicated"() {
+        given:
+        NatsMessageDeduplicator deduplicator = deduplicator({ Message msg -> throw error } as NatsMessageKeyExtractor)
+
+        when:
+        long key = deduplicator.keyOf(message(1L))
+        deduplicator.processed(key)
+
+        then:
+        key == NatsMessageDeduplicator.NO_KEY
+        !deduplicator.isDuplicate(deduplicator.keyOf(message(1L)))
+
+        where:
+        error << [
+                new SerializationException("Not json"),
+                new ClassCastException("Not a map"),
+                new IllegalStateException("No id")
+        ]
+    }
+
+    private static NatsMessageDeduplicator deduplicator(NatsMessageKeyExtractor keyExtractor) {
+        new NatsMessageDeduplicator(keyExtractor, new NatsDeduplicationCache(16, Duration.ofMinutes(1)))
+    }
+
+    private static Message message(long sequence) {
+        new Message() {
+            @Override
+            long getSequence() {
+                sequence
+            }
+
+            @Override
+            String getSubject() {
+                "orders"
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import groovy.json.JsonSlurper
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Requires
+import io.micronaut.core.serialize.exceptions.SerializationException
+import io.micronaut.messaging.annotation.Body
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerException
+import io.micronaut.natsstreaming.exception.NatsStreamingListenerExceptionHandler
+import io.micronaut.natsstreaming.publisher.NatsStreamingPublisher
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+
+class NatsOrderingKeySpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsOrderingKeySpec',
+            'nats.embedded.enabled': true)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "a message whose ordering key cannot be read is handed to the exception handler and acked"() {
+        given:
+        KeyedListener listener = context.getBean(KeyedListener)
+        NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+
+        when:
+        publisher.publishRawAsync("ordering-key-spec", bytes("{broken")).get()
+        publisher.publishRawAsync("ordering-key-spec", bytes('{"id":"a"}')).get()
+
+        then:
+        conditions.eventually {
+            assert listener.received == ['{"id":"a"}']
+            assert listener.errors.size() == 1
+        }
+        listener.errors[0].cause instanceof SerializationException
+        new String(listener.errors[0].messageState.get().data, StandardCharsets.UTF_8) == "{broken"
+
+        when: "the ack wait of the listener elapses"
+        Thread.sleep(500)
+
+        then: "the message was acked and is not redelivered"
+        listener.errors.size() == 1
+    }
+
+    void "a message whose ordering key cannot be read is dead lettered"() {
+        given:
+        DeadLetterListener deadLetters = context.getBean(DeadLetterListener)
+        NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+
+        when:
+        publisher.publishRawAsync("ordering-key-dlq-spec", bytes("{broken")).get()
+
+        then:
+        conditions.eventually {
+            assert deadLetters.envelopes.size() == 1
+        }
+        deadLetters.envelopes[0].subject == "ordering-key-dlq-spec"
+        new String(deadLetters.envelopes[0].payload.toString().decodeBase64(), StandardCharsets.UTF_8) == "{broken"
+    }
+
+    private static byte[] bytes(String text) {
+        text.getBytes(StandardCharsets.UTF_8)
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsOrderingKeySpec')
+    @NatsStreamingListener(enableAck = true, lanes = 2, orderingKey = "id", ackWait = "200ms")
+    static class KeyedListener implements NatsStreamingListenerExceptionHandler {
+
+        final List<String> received = new CopyOnWriteArrayList<>()
+
+        final List<NatsStreamingListenerException> errors = new CopyOnWriteArrayList<>()
+
+        @Subject("ordering-key-spec")
+        void receive(@Body String body) {
+            received.add(body)
+        }
+
+        @Override
+        void handle(NatsStreamingListenerException exception) {
+            errors.add(exception)
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsOrderingKeySpec')
+    @NatsStreamingListener(enableAck = true, lanes = 2, orderingKey = "id", deadLetterSubject = "ordering-key-dlq")
+    static class DeadLetteringListener implements NatsStreamingListenerExceptionHandler {
+
+        @Subject("ordering-key-dlq-spec")
+        void receive(@Body String body) {
+        }
+
+        @Override
+        void handle(NatsStreamingListenerException exception) {
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsOrderingKeySpec')
+    @NatsStreamingListener
+    static class DeadLetterListener {
+
+        final List<Map> envelopes = new CopyOnWriteArrayList<>()
+
+        @Subject("ordering-key-dlq")
+        void receive(@Body byte[] envelope) {
+            envelopes.add((Map) new JsonSlurper().parse(envelope))
+        }
+    }
+}
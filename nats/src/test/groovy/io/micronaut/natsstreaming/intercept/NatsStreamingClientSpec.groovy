@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import groovy.json.JsonSlurper
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Requires
+import io.micronaut.messaging.annotation.Body
+import io.micronaut.natsstreaming.annotation.NatsStreamingClient
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import org.reactivestreams.Publisher
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+class NatsStreamingClientSpec extends Specification {
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsStreamingClientSpec',
+            'nats.embedded.enabled': true)
+
+    @Shared
+    OrderClient client = context.getBean(OrderClient)
+
+    @Shared
+    ClientListener listener = context.getBean(ClientListener)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void setup() {
+        listener.received.clear()
+        listener.dynamic.clear()
+    }
+
+    void "a void method publishes a String body as raw UTF-8 bytes"() {
+        when:
+        client.send("caf\u00e9")
+
+        then:
+        conditions.eventually {
+            assert listener.received.size() == 1
+        }
+        text(listener.received[0]) == "caf\u00e9"
+    }
+
+    void "a String method returns the guid of a bean body published as json"() {
+        when:
+        String guid = client.sendWithGuid(new Order(id: "o-1", quantity: 2))
+
+        then:
+        guid
+        conditions.eventually {
+            assert listener.received.size() == 1
+        }
+        new JsonSlurper().parse(listener.received[0]) == [id: "o-1", quantity: 2]
+    }
+
+    void "a CompletionStage method completes with the guid once the byte array body is published"() {
+        given:
+        byte[] body = [1, 2, 3] as byte[]
+
+        when:
+        String guid = client.sendAsync(body).toCompletableFuture().get(5, TimeUnit.SECONDS)
+
+        then:
+        guid
+        conditions.eventually {
+            assert listener.received.size() == 1
+        }
+        listener.received[0] == body
+    }
+
+    void "a CompletableFuture of Void completes empty"() {
+        expect:
+        client.sendAsyncWithoutGuid("empty").get(5, TimeUnit.SECONDS) == null
+        conditions.eventually {
+            assert listener.received.collect { text(it) } == ["empty"]
+        }
+    }
+
+    void "a Publisher method publishes once subscribed and emits the guid"() {
+        given:
+        Publisher<String> publisher = client.sendReactive("reactive")
+
+        when:
+        Thread.sleep(200)
+
+        then:
+        listener.received.empty
+
+        when:
+        List<String> guids = collect(publisher).get(5, TimeUnit.SECONDS)
+
+        then:
+        guids.size() == 1
+        guids[0]
+        conditions.eventually {
+            assert listener.received.collect { text(it) } == ["reactive"]
+        }
+    }
+
+    void "a Publisher of Void completes without emitting"() {
+        expect:
+        collect(client.sendReactiveWithoutGuid("reactive-empty")).get(5, TimeUnit.SECONDS).empty
+        conditions.eventually {
+            assert listener.received.collect { text(it) } == ["reactive-empty"]
+        }
+    }
+
+    void "the subject argument is detected and the other argument is the body"() {
+        when:
+        client.sendTo("client-spec-dynamic", "routed")
+
+        then:
+        conditions.eventually {
+            assert listener.dynamic.collect { text(it) } == ["routed"]
+        }
+        listener.received.empty
+    }
+
+    void "an Object body is serialized with the serdes of its runtime type"() {
+        when:
+        client.sendObject([id: "o-2"])
+        client.sendObject("plain")
+
+        then:
+        conditions.eventually {
+            assert listener.received.size() == 2
+        }
+        new JsonSlurper().parse(listener.received[0]) == [id: "o-2"]
+        text(listener.received[1]) == "plain"
+    }
+
+    private static String text(byte[] body) {
+        new String(body, StandardCharsets.UTF_8)
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>()
+        List<T> items = new CopyOnWriteArrayList<>()
+        publisher.subscribe(new Subscriber<T>() {
+            @Override
+            void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE)
+            }
+
+            @Override
+            void onNext(T item) {
+                items.add(item)
+            }
+
+            @Override
+            void onError(Throwable error) {
+                result.completeExceptionally(error)
+            }
+
+            @Override
+            void onComplete() {
+                result.complete(items)
+            }
+        })
+        result
+    }
+
+    static class Order {
+        String id
+        int quantity
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsStreamingClientSpec')
+    @NatsStreamingClient
+    static interface OrderClient {
+
+        @Subject("client-spec")
+        void send(String body)
+
+        @Subject("client-spec")
+        String sendWithGuid(@Body Order order)
+
+        @Subject("client-spec")
+        CompletionStage<String> sendAsync(byte[] body)
+
+        @Subject("client-spec")
+        CompletableFuture<Void> sendAsyncWithoutGuid(String body)
+
+        @Subject("client-spec")
+        Publisher<String> sendReactive(String body)
+
+        @Subject("client-spec")
+        Publisher<Void> sendReactiveWithoutGuid(String body)
+
+        void sendTo(@Subject String subject, @Body String body)
+
+        @Subject("client-spec")
+        void sendObject(Object body)
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsStreamingClientSpec')
+    @NatsStreamingListener
+    static class ClientListener {
+
+        final List<byte[]> received = new CopyOnWriteArrayList<>()
+
+        final List<byte[]> dynamic = new CopyOnWriteArrayList<>()
+
+        @Subject("client-spec")
+        void receive(@Body byte[] body) {
+            received.add(body)
+        }
+
+        @Subject("client-spec-dynamic")
+        void receiveDynamic(@Body byte[] body) {
+            dynamic.add(body)
+        }
+    }
+}
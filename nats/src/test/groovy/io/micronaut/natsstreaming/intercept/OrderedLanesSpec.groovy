@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.intercept
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+class OrderedLanesSpec extends Specification {
+
+    @AutoCleanup("shutdownNow")
+    ExecutorService executor = Executors.newFixedThreadPool(8)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "the tasks of a key run in submission order on a concurrent executor"() {
+        given:
+        OrderedLanes lanes = new OrderedLanes(executor, 4, 16)
+        Map<String, List<Integer>> runs = new ConcurrentHashMap<>()
+        CountDownLatch done = new CountDownLatch(10 * 200)
+
+        when:
+        (0..<200).each { i ->
+            (0..<10).each { k ->
+                String key = "key-$k"
+                lanes.execute(key, {
+                    runs.computeIfAbsent(key, { new CopyOnWriteArrayList<>() }).add(i)
+                    done.countDown()
+                } as Runnable)
+            }
+        }
+
+        then:
+        done.await(10, TimeUnit.SECONDS)
+        runs.size() == 10
+        runs.values().every { it == (0..<200).toList() }
+    }
+
+    void "the lanes run in parallel"() {
+        given:
+        OrderedLanes lanes = new OrderedLanes(executor, 2, 16)
+        CountDownLatch second = new CountDownLatch(1)
+        CountDownLatch done = new CountDownLatch(1)
+
+        when: "the task of the first lane waits for the task of the second lane"
+        lanes.execute(0, {
+            if (second.await(5, TimeUnit.SECONDS)) {
+                done.countDown()
+            }
+        } as Runnable)
+        lanes.execute(1, { second.countDown() } as Runnable)
+
+        then:
+        done.await(5, TimeUnit.SECONDS)
+    }
+
+    void "a lane waits for the release of an asynchronous task"() {
+        given:
+        OrderedLanes lanes = new OrderedLanes(executor, 1, 16)
+        List<String> runs = new CopyOnWriteArrayList<>()
+        Runnable release = null
+
+        when:
+        lanes.execute("key", { Runnable r ->
+            runs.add("first")
+            release = r
+        } as Consumer<Runnable>)
+        lanes.execute("key", { runs.add("second") } as Runnable)
+        conditions.eventually {
+            assert release != null
+        }
+        Thread.sleep(100)
+
+        then:
+        runs == ["first"]
+
+        when:
+        release.run()
+
+        then:
+        conditions.eventually {
+            assert runs == ["first", "second"]
+        }
+    }
+
+    void "a task throwing an exception releases its lane"() {
+        given:
+        OrderedLanes lanes = new OrderedLanes(executor, 1, 16)
+        CountDownLatch done = new CountDownLatch(1)
+
+        when:
+        lanes.execute("key", { throw new IllegalStateException("expected") } as Runnable)
+        lanes.execute("key", { done.countDown() } as Runnable)
+
+        then:
+        done.await(5, TimeUnit.SECONDS)
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher
+
+import io.micronaut.context.ApplicationContext
+import io.micronaut.context.annotation.Requires
+import io.micronaut.messaging.annotation.Body
+import io.micronaut.natsstreaming.annotation.NatsStreamingListener
+import io.micronaut.natsstreaming.annotation.Subject
+import io.nats.streaming.Message
+import io.nats.streaming.MessageHandler
+import io.nats.streaming.StreamingConnection
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+class NatsStringPayloadSpec extends Specification {
+
+    static final String TEXT = "caf\u00e9 \"quoted\""
+
+    @Shared
+    @AutoCleanup
+    ApplicationContext context = ApplicationContext.run(
+            'spec.name': 'NatsStringPayloadSpec',
+            'nats.embedded.enabled': true)
+
+    @Shared
+    NatsStreamingPublisher publisher = context.getBean(NatsStreamingPublisher)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void "a String payload is published as its raw UTF-8 bytes, not as a json string"() {
+        given:
+        List<byte[]> bodies = new CopyOnWriteArrayList<>()
+        io.nats.streaming.Subscription subscription = context.getBean(StreamingConnection)
+                .subscribe("string-wire-spec", { Message msg -> bodies.add(msg.data) } as MessageHandler)
+
+        when:
+        publisher.publish("string-wire-spec", TEXT)
+        publisher.publishAsync("string-wire-spec", TEXT).get(5, TimeUnit.SECONDS)
+
+        then:
+        conditions.eventually {
+            assert bodies.size() == 2
+        }
+        bodies.every { it == TEXT.getBytes(StandardCharsets.UTF_8) }
+
+        cleanup:
+        subscription?.close()
+    }
+
+    void "a String listener argument reads the raw UTF-8 bytes"() {
+        given:
+        StringListener listener = context.getBean(StringListener)
+
+        when:
+        publisher.publishRawAsync("string-listener-spec", TEXT.getBytes(StandardCharsets.UTF_8))
+                .get(5, TimeUnit.SECONDS)
+        publisher.publishAsync("string-listener-spec", TEXT).get(5, TimeUnit.SECONDS)
+
+        then:
+        conditions.eventually {
+            assert listener.received == [TEXT, TEXT]
+        }
+    }
+
+    @Requires(property = 'spec.name', value = 'NatsStringPayloadSpec')
+    @NatsStreamingListener
+    static class StringListener {
+
+        final List<String> received = new CopyOnWriteArrayList<>()
+
+        @Subject("string-listener-spec")
+        void receive(@Body String body) {
+            received.add(body)
+        }
+    }
+}
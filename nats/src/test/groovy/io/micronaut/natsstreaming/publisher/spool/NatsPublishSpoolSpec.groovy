@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.publisher.spool
+
+import io.micronaut.natsstreaming.exception.NatsStreamingClientException
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+
+class NatsPublishSpoolSpec extends Specification {
+
+    Path directory
+
+    def setup() {
+        directory = Files.createTempDirectory("nats-spool-spec")
+    }
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    void "the messages left by a previous run are recovered in order"() {
+        given:
+        NatsPublishSpool spool = new NatsPublishSpool(config())
+        spool.append("orders", bytes("1"))
+        spool.append("orders", bytes("2"))
+        spool.append("payments", bytes("3"))
+        spool.commit(spool.peek(1).last(), 1)
+        spool.close()
+
+        when:
+        NatsPublishSpool recovered = new NatsPublishSpool(config())
+        List<NatsSpooledMessage> messages = recovered.peek(10)
+
+        then:
+        recovered.depth == 2
+        messages*.subject == ["orders", "payments"]
+        messages.collect { text(it) } == ["2", "3"]
+
+        cleanup:
+        recovered.close()
+    }
+
+    void "the spool rolls over to new segments and deletes the drained ones"() {
+        given:
+        NatsPublishSpool spool = new NatsPublishSpool(config(128, 4))
+
+        when:
+        (1..8).each { spool.append("orders", bytes("message-$it")) }
+
+        then:
+        segmentFiles().size() > 1
+        spool.depth == 8
+        spool.peek(10).collect { text(it) } == (1..8).collect { "message-$it".toString() }
+
+        when:
+        List<NatsSpooledMessage> messages = spool.peek(10)
+        spool.commit(messages.last(), messages.size())
+
+        then:
+        spool.depth == 0
+        segmentFiles().size() == 1
+        spool.peek(10).isEmpty()
+
+        cleanup:
+        spool.close()
+    }
+
+    void "appending fails once every segment is full"() {
+        given:
+        NatsPublishSpool spool = new NatsPublishSpool(config(64, 2))
+
+        when:
+        (1..10).each { spool.append("orders", bytes("message-$it")) }
+
+        then:
+        thrown(NatsStreamingClientException)
+        spool.depth > 0
+
+        cleanup:
+        spool.close()
+    }
+
+    void "a torn tail record is dropped and the next records are appended after the last complete one"() {
+        given:
+        NatsPublishSpool spool = new NatsPublishSpool(config())
+        spool.append("orders", bytes("1"))
+        spool.append("orders", bytes("2"))
+        spool.append("orders", bytes("3"))
+        spool.close()
+        Path segment = segmentFiles().first()
+        tear.call(segment)
+
+        when:
+        NatsPublishSpool recovered = new NatsPublishSpool(config())
+
+        then:
+        recovered.depth == recoveredMessages.size()
+        recovered.peek(10).collect { text(it) } == recoveredMessages
+
+        when:
+        recovered.append("orders", bytes("4"))
+        recovered.close()
+        recovered = new NatsPublishSpool(config())
+
+        then:
+        recovered.peek(10).collect { text(it) } == recoveredMessages + "4"
+
+        cleanup:
+        recovered.close()
+
+        where:
+        tear                                                   | recoveredMessages
+        { Path file -> truncate(file, Files.size(file) - 2) } | ["1", "2"]
+        { Path file -> flipLastByte(file) }                    | ["1", "2"]
+        { Path file -> appendGarbage(file) }                   | ["1", "2", "3"]
+    }
+
+    private NatsPublishSpoolConfig config(int segmentSize = NatsPublishSpoolConfig.DEFAULT_SEGMENT_SIZE,
+                                          int maxSegments = NatsPublishSpoolConfig.DEFAULT_MAX_SEGMENTS) {
+        NatsPublishSpoolConfig config = new NatsPublishSpoolConfig()
+        config.enabled = true
+        config.directory = directory
+        config.segmentSize = segmentSize
+        config.maxSegments = maxSegments
+        config
+    }
+
+    private List<Path> segmentFiles() {
+        Files.list(directory).withCloseable { it.sorted().collect() }
+    }
+
+    private static byte[] bytes(String text) {
+        text.getBytes(StandardCharsets.UTF_8)
+    }
+
+    private static String text(NatsSpooledMessage message) {
+        new String(message.data, StandardCharsets.UTF_8)
+    }
+
+    private static void truncate(Path file, long size) {
+        new RandomAccessFile(file.toFile(), "rw").withCloseable { it.setLength(size) }
+    }
+
+    private static void flipLastByte(Path file) {
+        new RandomAccessFile(file.toFile(), "rw").withCloseable {
+            it.seek(it.length() - 1)
+            int last = it.read()
+            it.seek(it.length() - 1)
+            it.write(last ^ 0xFF)
+        }
+    }
+
+    private static void appendGarbage(Path file) {
+        new RandomAccessFile(file.toFile(), "rw").withCloseable {
+            it.seek(it.length())
+            it.writeInt(Integer.MAX_VALUE)
+            it.writeInt(42)
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.serdes
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import groovy.transform.EqualsAndHashCode
+import io.micronaut.core.annotation.Introspected
+import io.micronaut.core.serialize.exceptions.SerializationException
+import io.micronaut.core.type.Argument
+import io.nats.streaming.Message
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class IntrospectedJsonNatsMessageSerDesSpec extends Specification {
+
+    @Shared
+    ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+
+    @Shared
+    IntrospectedJsonNatsMessageSerDes introspected = new IntrospectedJsonNatsMessageSerDes(objectMapper)
+
+    @Shared
+    JsonNatsMessageSerDes json = new JsonNatsMessageSerDes(objectMapper)
+
+    void "the order is supported by the introspected serdes"() {
+        expect:
+        introspected.supports(Argument.of(Order))
+    }
+
+    @Unroll
+    void "an order written by the #writer serdes is read back by the #reader serdes"() {
+        given:
+        NatsMessageSerDes<Object> writing = this."$writer"
+        NatsMessageSerDes<Object> reading = this."$reader"
+
+        when:
+        Object read = reading.deserialize(message(writing.serialize(order)), Argument.of(Order))
+
+        then:
+        read == order
+
+        where:
+        [writer, reader, order] << [
+                [['introspected', 'json'], ['json', 'introspected'], ['introspected', 'introspected']],
+                [fullOrder(), emptyOrder(), orderWithNullElements()]
+        ].combinations().collect { it.flatten() }
+    }
+
+    void "unknown fields are skipped, whatever their shape"() {
+        given:
+        String body = '{"id":"o-1","unknown":{"nested":[1,{"deep":null}]},"extra":3,"quantity":2,"more":[[]]}'
+
+        when:
+        Order order = introspected.deserialize(message(body), Argument.of(Order))
+
+        then:
+        order.id == 'o-1'
+        order.quantity == 2
+        order.customer == null
+    }
+
+    @Unroll
+    void "#body is rejected instead of read as a default value"() {
+        when:
+        introspected.deserialize(message(body), Argument.of(Order))
+
+        then:
+        thrown(SerializationException)
+
+        where:
+        body << [
+                '{"id":{"value":"o-1"}}',
+                '{"id":["o-1"]}',
+                '{"quantity":"two"}',
+                '{"quantity":{}}',
+                '{"quantity":1.5}',
+                '{"quantity":true}',
+                '{"version":[1]}',
+                '{"paid":"yes"}',
+                '{"paid":[]}',
+                '{"total":{}}',
+                '{"total":"1.5"}',
+                '{"status":"UNKNOWN"}',
+                '{"status":1}',
+                '{"reference":"not-an-uuid"}',
+                '{"reference":{}}',
+                '{"customer":"someone"}',
+                '{"customer":{"emails":"someone@example.com"}}',
+                '{"lines":{}}',
+                '{"lines":[{"price":true}]}',
+                '{"lines":[{"amount":70000}]}',
+                '{"tags":[{}]}',
+                '{"counters":[]}',
+                '{"counters":{"sent":"many"}}',
+                '["o-1"]'
+        ]
+    }
+
+    private static Order fullOrder() {
+        new Order(
+                id: 'o-1',
+                quantity: 3,
+                version: 9L,
+                paid: true,
+                total: 10.5d,
+                status: Status.CLOSED,
+                reference: UUID.fromString('7d444840-9dc0-11d1-b245-5ffdce74fad2'),
+                customer: new Customer(name: 'someone', emails: ['someone@example.com', 'other@example.com']),
+                lines: [new Line(sku: 'a', price: new BigDecimal('3.50'), amount: 1 as short),
+                        new Line(sku: 'b', price: new BigDecimal('7'), amount: 2 as short)],
+                tags: ['urgent', 'gift'] as LinkedHashSet,
+                counters: [sent: 1, received: 2]
+        )
+    }
+
+    private static Order emptyOrder() {
+        new Order()
+    }
+
+    private static Order orderWithNullElements() {
+        new Order(
+                id: 'o-2',
+                customer: new Customer(name: null, emails: []),
+                lines: [null, new Line(sku: 'c')],
+                tags: [] as LinkedHashSet,
+                counters: [sent: null]
+        )
+    }
+
+    private static Message message(byte[] data) {
+        new Message() {
+            @Override
+            byte[] getData() {
+                data
+            }
+        }
+    }
+
+    private static Message message(String body) {
+        message(body.getBytes(StandardCharsets.UTF_8))
+    }
+
+    static enum Status {
+        OPEN, CLOSED
+    }
+
+    @Introspected
+    @EqualsAndHashCode
+    static class Order {
+        String id
+        int quantity
+        Long version
+        Boolean paid
+        double total
+        Status status
+        UUID reference
+        Customer customer
+        List<Line> lines
+        Set<String> tags
+        Map<String, Integer> counters
+    }
+
+    @Introspected
+    @EqualsAndHashCode
+    static class Customer {
+        String name
+        List<String> emails
+    }
+
+    @Introspected
+    @EqualsAndHashCode
+    static class Line {
+        String sku
+        BigDecimal price
+        short amount
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017-2021 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.natsstreaming.subscriber
+
+import io.nats.streaming.Message
+import io.nats.streaming.MessageHandler
+import io.nats.streaming.StreamingConnection
+import io.nats.streaming.SubscriptionOptions
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.function.Function
+import java.util.function.Supplier
+
+class NatsSubjectPublisherSpec extends Specification {
+
+    static final int DEFAULT_MAX_IN_FLIGHT = new SubscriptionOptions.Builder().build().maxInFlight
+
+    List<String> events = new CopyOnWriteArrayList<>()
+
+    io.nats.streaming.Subscription natsSubscription = Mock()
+
+    StreamingConnection connection = Stub()
+
+    MessageHandler handler
+
+    SubscriptionOptions subscribedOptions
+
+    int subscriptions
+
+    NatsSubjectPublisher<String> publisher = new NatsSubjectPublisher<String>({ connection } as Supplier,
+            'orders', NatsSubjectPublisher.withManualAcks(null),
+            { Message msg -> text(msg) } as Function)
+
+    void setup() {
+        connection.subscribe('orders', _ as MessageHandler, _ as SubscriptionOptions) >> { args ->
+            subscriptions++
+            handler = args[1]
+            subscribedOptions = args[2]
+            natsSubscription
+        }
+    }
+
+    void "the nats subscription is opened on the first request only"() {
+        given:
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+
+        when:
+        publisher.subscribe(subscriber)
+
+        then:
+        subscriptions == 0
+
+        when:
+        subscriber.subscription.request(1)
+        subscriber.subscription.request(1)
+
+        then:
+        subscriptions == 1
+        subscribedOptions.manualAcks
+    }
+
+    @Unroll
+    void "a first request of #requested opens the subscription with a max in flight of #maxInFlight"() {
+        given:
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+        publisher.subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(requested)
+
+        then:
+        subscribedOptions.maxInFlight == maxInFlight
+        subscribedOptions.manualAcks
+
+        where:
+        requested      | maxInFlight
+        1              | 1
+        16             | 16
+        Long.MAX_VALUE | DEFAULT_MAX_IN_FLIGHT
+    }
+
+    void "the messages are emitted as requested and acked once onNext returns"() {
+        given:
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+        publisher.subscribe(subscriber)
+        subscriber.subscription.request(1)
+
+        when:
+        ['a', 'b', 'c'].each { handler.onMessage(message(it)) }
+
+        then:
+        events == ['onNext a', 'ack a']
+
+        when:
+        subscriber.subscription.request(2)
+
+        then:
+        events == ['onNext a', 'ack a', 'onNext b', 'ack b', 'onNext c', 'ack c']
+
+        when:
+        handler.onMessage(message('d'))
+
+        then: "the demand was used up"
+        events.size() == 6
+
+        when:
+        subscriber.subscription.request(1)
+
+        then:
+        events.takeRight(2) == ['onNext d', 'ack d']
+    }
+
+    void "cancel closes the nats subscription and stops the emission"() {
+        given:
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+        publisher.subscribe(subscriber)
+        subscriber.subscription.request(1)
+
+        when:
+        subscriber.subscription.cancel()
+
+        then:
+        1 * natsSubscription.close()
+
+        when:
+        handler.onMessage(message('late'))
+        subscriber.subscription.request(1)
+
+        then:
+        events.empty
+        subscriber.error == null
+    }
+
+    @Unroll
+    void "a request of #requested signals onError and closes the nats subscription"() {
+        given:
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+        publisher.subscribe(subscriber)
+        subscriber.subscription.request(1)
+
+        when:
+        subscriber.subscription.request(requested)
+
+        then:
+        1 * natsSubscription.close()
+        subscriber.error instanceof IllegalArgumentException
+
+        when:
+        handler.onMessage(message('late'))
+
+        then:
+        events.empty
+
+        where:
+        requested << [0L, -1L]
+    }
+
+    void "a body that can't be deserialized signals onError without acking"() {
+        given:
+        NatsSubjectPublisher<String> failing = new NatsSubjectPublisher<String>({ connection } as Supplier,
+                'orders', NatsSubjectPublisher.withManualAcks(null),
+                { Message msg -> throw new IllegalStateException('Not a string') } as Function)
+        RecordingSubscriber subscriber = new RecordingSubscriber(events)
+        failing.subscribe(subscriber)
+        subscriber.subscription.request(1)
+
+        when:
+        handler.onMessage(message('broken'))
+
+        then:
+        1 * natsSubscription.close()
+        subscriber.error instanceof IllegalStateException
+        events.empty
+    }
+
+    private Message message(String body) {
+        List<String> acks = events
+        new Message() {
+            @Override
+            byte[] getData() {
+                body.getBytes(StandardCharsets.UTF_8)
+            }
+
+            @Override
+            void ack() throws IOException {
+                acks.add('ack ' + body)
+            }
+        }
+    }
+
+    private static String text(Message msg) {
+        new String(msg.data, StandardCharsets.UTF_8)
+    }
+
+    /**
+     * Records the signals it receives.
+     */
+    static class RecordingSubscriber implements Subscriber<String> {
+
+        final List<String> events
+
+        Subscription subscription
+
+        Throwable error
+
+        RecordingSubscriber(List<String> events) {
+            this.events = events
+        }
+
+        @Override
+        void onSubscribe(Subscription subscription) {
+            this.subscription = subscription
+        }
+
+        @Override
+        void onNext(String item) {
+            events.add('onNext ' + item)
+        }
+
+        @Override
+        void onError(Throwable error) {
+            this.error = error
+        }
+
+        @Override
+        void onComplete() {
+            events.add('complete')
+        }
+    }
+}